@@ -0,0 +1,29 @@
+#!/bin/bash
+
+if [[ "$1" == "--help" || "$1" == "-h" ]]; then
+    echo "Benchmark script usage:"
+    echo
+    echo "    $0 <options>"
+    echo
+    echo "Runs a fit on every bundled dataset once for every evaluation strategy"
+    echo "and reports the wall-clock time of each run. The <options> are passed"
+    echo "on to run.sh, see '$0' without arguments for the available options."
+    echo
+    echo "Example: $0 --dummy"
+    exit 1
+fi
+
+test -f target/logistic-regression-jar-with-dependencies.jar || mvn package
+
+datasets="mtcars breast_cancer"
+strategies="sequential batched"
+
+printf "%-15s %-12s %10s\n" "dataset" "strategy" "seconds"
+for dataset in ${datasets}; do
+    for strategy in ${strategies}; do
+        start=$(date +%s.%N)
+        ./run.sh ${dataset} --strategy ${strategy} $* > /dev/null
+        end=$(date +%s.%N)
+        printf "%-15s %-12s %10.2f\n" "${dataset}" "${strategy}" "$(echo "${end} - ${start}" | bc)"
+    done
+done
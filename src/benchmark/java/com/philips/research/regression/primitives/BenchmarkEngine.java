@@ -0,0 +1,53 @@
+package com.philips.research.regression.primitives;
+
+import com.philips.research.regression.logging.CountingStrategy;
+import com.philips.research.regression.network.LoopbackNetwork;
+import dk.alexandra.fresco.framework.Application;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.builder.numeric.field.BigIntegerFieldDefinition;
+import dk.alexandra.fresco.framework.network.Network;
+import dk.alexandra.fresco.framework.sce.SecureComputationEngine;
+import dk.alexandra.fresco.framework.sce.SecureComputationEngineImpl;
+import dk.alexandra.fresco.framework.sce.evaluator.BatchedProtocolEvaluator;
+import dk.alexandra.fresco.framework.util.ModulusFinder;
+import dk.alexandra.fresco.suite.dummy.arithmetic.DummyArithmeticProtocolSuite;
+import dk.alexandra.fresco.suite.dummy.arithmetic.DummyArithmeticResourcePool;
+import dk.alexandra.fresco.suite.dummy.arithmetic.DummyArithmeticResourcePoolImpl;
+
+/**
+ * Evaluates applications for a single party using dummy arithmetic, and
+ * counts the rounds and native protocols that were needed to do so. A single
+ * party only talks to itself, so a loopback network suffices; the in-memory
+ * network is for several parties in one process.
+ */
+class BenchmarkEngine {
+    private static final int MOD_BIT_LENGTH = 512;
+    private static final int MAX_BIT_LENGTH = 200;
+
+    private final CountingStrategy<DummyArithmeticResourcePool> strategy;
+    private final SecureComputationEngine<DummyArithmeticResourcePool, ProtocolBuilderNumeric> sce;
+    private final DummyArithmeticResourcePool resourcePool;
+    private final Network network;
+
+    BenchmarkEngine(int precision) {
+        BigIntegerFieldDefinition definition =
+            new BigIntegerFieldDefinition(ModulusFinder.findSuitableModulus(MOD_BIT_LENGTH));
+        DummyArithmeticProtocolSuite protocolSuite =
+            new DummyArithmeticProtocolSuite(definition, MAX_BIT_LENGTH, precision);
+        strategy = new CountingStrategy<>();
+        sce = new SecureComputationEngineImpl<>(protocolSuite, new BatchedProtocolEvaluator<>(strategy, protocolSuite));
+        resourcePool = new DummyArithmeticResourcePoolImpl(1, 1, definition);
+        network = new LoopbackNetwork();
+    }
+
+    <T> T run(Application<T, ProtocolBuilderNumeric> application, ProtocolCounters counters) {
+        strategy.reset();
+        T result = sce.runApplication(application, resourcePool, network);
+        counters.record(strategy);
+        return result;
+    }
+
+    void shutdown() {
+        sce.shutdownSCE();
+    }
+}
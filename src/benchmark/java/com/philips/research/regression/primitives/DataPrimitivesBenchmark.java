@@ -0,0 +1,91 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.collections.MatrixUtils;
+import dk.alexandra.fresco.lib.real.RealLinearAlgebra;
+import dk.alexandra.fresco.lib.real.SReal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import static com.philips.research.regression.util.ListConversions.unwrap;
+
+/**
+ * Benchmarks the primitives whose cost depends on the number of rows as well
+ * as the number of variables. Measured times and counts include inputting the
+ * operands and opening the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DataPrimitivesBenchmark {
+
+    @Param({"16", "64", "256"})
+    public int rows;
+
+    @Param({"2", "5", "10"})
+    public int width;
+
+    @Param({"16", "24"})
+    public int precision;
+
+    private BenchmarkEngine engine;
+    private Matrix<BigDecimal> x;
+    private Vector<BigDecimal> y;
+    private Vector<BigDecimal> beta;
+
+    @Setup
+    public void setUp() {
+        RandomInputs random = new RandomInputs();
+        engine = new BenchmarkEngine(precision);
+        x = random.matrix(rows, width);
+        y = random.outcomes(rows);
+        beta = random.vector(width);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public Matrix<BigDecimal> hessian(ProtocolCounters counters) {
+        return engine.run(builder -> {
+            RealLinearAlgebra real = builder.realLinAlg();
+            DRes<Matrix<DRes<SReal>>> closed = real.input(x, 1);
+            DRes<Matrix<DRes<BigDecimal>>> opened = real.openMatrix(builder.seq(new Hessian(closed)));
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+        }, counters);
+    }
+
+    @Benchmark
+    public List<BigDecimal> logLikelihoodPrime(ProtocolCounters counters) {
+        return engine.run(builder -> {
+            RealLinearAlgebra real = builder.realLinAlg();
+            DRes<Matrix<DRes<SReal>>> closedX = real.input(x, 1);
+            DRes<Vector<DRes<SReal>>> closedY = real.input(y, 1);
+            DRes<Vector<DRes<SReal>>> closedBeta = real.input(beta, 1);
+            DRes<Vector<DRes<BigDecimal>>> opened =
+                real.openVector(builder.seq(new LogLikelihoodPrime(closedX, closedY, closedBeta)));
+            return () -> unwrap(opened);
+        }, counters);
+    }
+}
@@ -0,0 +1,114 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.collections.MatrixUtils;
+import dk.alexandra.fresco.lib.real.RealLinearAlgebra;
+import dk.alexandra.fresco.lib.real.SReal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import static com.philips.research.regression.util.ListConversions.unwrap;
+import static com.philips.research.regression.util.MatrixConversions.transpose;
+
+/**
+ * Benchmarks the primitives whose cost only depends on the number of
+ * variables. Measured times and counts include inputting the operands and
+ * opening the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MatrixPrimitivesBenchmark {
+
+    @Param({"2", "5", "10", "20"})
+    public int width;
+
+    @Param({"16", "24"})
+    public int precision;
+
+    private BenchmarkEngine engine;
+    private Matrix<BigDecimal> positiveDefinite;
+    private Matrix<BigDecimal> lowerTriangular;
+    private Matrix<BigDecimal> upperTriangular;
+    private Vector<BigDecimal> vector;
+    private Vector<BigDecimal> beta;
+
+    @Setup
+    public void setUp() {
+        RandomInputs random = new RandomInputs();
+        engine = new BenchmarkEngine(precision);
+        positiveDefinite = random.positiveDefiniteMatrix(width);
+        lowerTriangular = random.lowerTriangularMatrix(width);
+        upperTriangular = transpose(random.lowerTriangularMatrix(width));
+        vector = random.vector(width);
+        beta = random.vector(width);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public Matrix<BigDecimal> cholesky(ProtocolCounters counters) {
+        return engine.run(builder -> {
+            RealLinearAlgebra real = builder.realLinAlg();
+            DRes<Matrix<DRes<SReal>>> closed = real.input(positiveDefinite, 1);
+            DRes<Matrix<DRes<BigDecimal>>> opened = real.openMatrix(builder.seq(new Cholesky(closed)));
+            return () -> new MatrixUtils().unwrapMatrix(opened);
+        }, counters);
+    }
+
+    @Benchmark
+    public List<BigDecimal> forwardSubstitution(ProtocolCounters counters) {
+        return engine.run(builder -> {
+            RealLinearAlgebra real = builder.realLinAlg();
+            DRes<Matrix<DRes<SReal>>> closedMatrix = real.input(lowerTriangular, 1);
+            DRes<Vector<DRes<SReal>>> closedVector = real.input(vector, 1);
+            DRes<Vector<DRes<BigDecimal>>> opened =
+                real.openVector(builder.seq(new ForwardSubstitution(closedMatrix, closedVector)));
+            return () -> unwrap(opened);
+        }, counters);
+    }
+
+    @Benchmark
+    public List<BigDecimal> backSubstitution(ProtocolCounters counters) {
+        return engine.run(builder -> {
+            RealLinearAlgebra real = builder.realLinAlg();
+            DRes<Matrix<DRes<SReal>>> closedMatrix = real.input(upperTriangular, 1);
+            DRes<Vector<DRes<SReal>>> closedVector = real.input(vector, 1);
+            DRes<Vector<DRes<BigDecimal>>> opened =
+                real.openVector(builder.seq(new BackSubstitution(closedMatrix, closedVector)));
+            return () -> unwrap(opened);
+        }, counters);
+    }
+
+    @Benchmark
+    public BigDecimal likelihood(ProtocolCounters counters) {
+        return engine.run(builder -> {
+            RealLinearAlgebra real = builder.realLinAlg();
+            DRes<Vector<DRes<SReal>>> closedXi = real.input(vector, 1);
+            DRes<Vector<DRes<SReal>>> closedBeta = real.input(beta, 1);
+            return builder.realNumeric().open(builder.seq(new Likelihood(closedXi, closedBeta)));
+        }, counters);
+    }
+}
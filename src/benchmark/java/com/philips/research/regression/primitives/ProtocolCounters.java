@@ -0,0 +1,35 @@
+package com.philips.research.regression.primitives;
+
+import com.philips.research.regression.logging.CountingStrategy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results: the number of rounds, batches and native
+ * protocols of a single evaluation. All benchmarks run in single shot mode,
+ * so the sum that JMH reports for an iteration equals the count of one
+ * evaluation.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class ProtocolCounters {
+    public long rounds;
+    public long batches;
+    public long nativeProtocols;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        rounds = 0;
+        batches = 0;
+        nativeProtocols = 0;
+    }
+
+    void record(CountingStrategy<?> strategy) {
+        rounds += strategy.getRounds();
+        batches += strategy.getBatches();
+        nativeProtocols += strategy.getNativeProtocols();
+    }
+}
@@ -0,0 +1,77 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Vector;
+
+import static java.math.BigDecimal.valueOf;
+
+/**
+ * Deterministic pseudo random inputs, so that benchmark results of different
+ * releases can be compared.
+ */
+class RandomInputs {
+    private final Random random = new Random(42);
+
+    Matrix<BigDecimal> matrix(int height, int width) {
+        return new Matrix<>(height, width, row -> {
+            ArrayList<BigDecimal> elements = new ArrayList<>();
+            for (int column = 0; column < width; column++) {
+                elements.add(valueOf(random.nextDouble()));
+            }
+            return elements;
+        });
+    }
+
+    Matrix<BigDecimal> positiveDefiniteMatrix(int size) {
+        double[][] m = new double[size][size];
+        for (double[] row : m) {
+            for (int c = 0; c < size; c++) {
+                row[c] = random.nextDouble();
+            }
+        }
+        return new Matrix<>(size, size, row -> {
+            ArrayList<BigDecimal> elements = new ArrayList<>();
+            for (int column = 0; column < size; column++) {
+                double sum = row == column ? 1.0 : 0.0;
+                for (int k = 0; k < size; k++) {
+                    sum += m[k][row] * m[k][column] / size;
+                }
+                elements.add(valueOf(sum));
+            }
+            return elements;
+        });
+    }
+
+    Matrix<BigDecimal> lowerTriangularMatrix(int size) {
+        return new Matrix<>(size, size, row -> {
+            ArrayList<BigDecimal> elements = new ArrayList<>();
+            for (int column = 0; column < size; column++) {
+                double value = column < row ? random.nextDouble() - 0.5
+                    : column == row ? 1.0 + random.nextDouble()
+                    : 0.0;
+                elements.add(valueOf(value));
+            }
+            return elements;
+        });
+    }
+
+    Vector<BigDecimal> vector(int size) {
+        Vector<BigDecimal> vector = new Vector<>();
+        for (int i = 0; i < size; i++) {
+            vector.add(valueOf(random.nextDouble() - 0.5));
+        }
+        return vector;
+    }
+
+    Vector<BigDecimal> outcomes(int size) {
+        Vector<BigDecimal> vector = new Vector<>();
+        for (int i = 0; i < size; i++) {
+            vector.add(random.nextBoolean() ? BigDecimal.ONE : BigDecimal.ZERO);
+        }
+        return vector;
+    }
+}
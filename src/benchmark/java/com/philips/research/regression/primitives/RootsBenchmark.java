@@ -0,0 +1,83 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.lib.real.SReal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static java.math.BigDecimal.valueOf;
+
+/**
+ * Compares the fused reciprocal square root with a square root followed by
+ * a reciprocal, which it replaced. The rounds counter shows the difference
+ * in latency. Measured times and counts include inputting the operand and
+ * opening the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RootsBenchmark {
+
+    @Param({"0.25", "150", "100000"})
+    public double x;
+
+    @Param({"16", "24"})
+    public int precision;
+
+    private BenchmarkEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = new BenchmarkEngine(precision);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public Pair<BigDecimal, BigDecimal> reciprocalSquareRoot(ProtocolCounters counters) {
+        return engine.run(builder -> {
+            DRes<SReal> closed = builder.realNumeric().input(valueOf(x), 1);
+            return builder.seq(new ReciprocalSquareRoot(closed)).seq((seq, roots) -> open(seq, roots));
+        }, counters);
+    }
+
+    @Benchmark
+    public Pair<BigDecimal, BigDecimal> squareRootThenReciprocal(ProtocolCounters counters) {
+        return engine.run(builder -> {
+            DRes<SReal> closed = builder.realNumeric().input(valueOf(x), 1);
+            return builder.seq(seq -> {
+                DRes<SReal> sqrt = seq.realAdvanced().sqrt(closed);
+                DRes<SReal> reciprocal = seq.realAdvanced().reciprocal(sqrt);
+                return () -> new Pair<>(reciprocal, sqrt);
+            }).seq((seq, roots) -> open(seq, roots));
+        }, counters);
+    }
+
+    private static DRes<Pair<BigDecimal, BigDecimal>> open(
+        ProtocolBuilderNumeric builder, Pair<DRes<SReal>, DRes<SReal>> roots) {
+        DRes<BigDecimal> reciprocal = builder.realNumeric().open(roots.getFirst());
+        DRes<BigDecimal> sqrt = builder.realNumeric().open(roots.getSecond());
+        return () -> new Pair<>(reciprocal.out(), sqrt.out());
+    }
+}
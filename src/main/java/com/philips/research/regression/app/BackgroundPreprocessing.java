@@ -0,0 +1,46 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.preprocessing.BackgroundDataSupplier;
+import dk.alexandra.fresco.framework.Party;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDataSupplier;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings for producing Mascot material in the background, on a network
+ * channel that connects to the same hosts as the main channel, at ports
+ * shifted by a fixed offset.
+ */
+class BackgroundPreprocessing {
+    private final int portOffset;
+    private final int[] tripleWatermarks;
+    private final int[] expPipeWatermarks;
+
+    /**
+     * @param tripleWatermarks  the low and high watermark of the triple queue
+     * @param expPipeWatermarks the low and high watermark of the exponentiation pipe queue
+     */
+    BackgroundPreprocessing(int portOffset, int[] tripleWatermarks, int[] expPipeWatermarks) {
+        if (tripleWatermarks.length != 2 || expPipeWatermarks.length != 2) {
+            throw new IllegalArgumentException("Expected a low and a high watermark");
+        }
+        this.portOffset = portOffset;
+        this.tripleWatermarks = tripleWatermarks;
+        this.expPipeWatermarks = expPipeWatermarks;
+    }
+
+    Map<Integer, Party> channelPartyMap(Map<Integer, Party> partyMap) {
+        Map<Integer, Party> shifted = new HashMap<>();
+        for (Party party : partyMap.values()) {
+            shifted.put(party.getPartyId(),
+                new Party(party.getPartyId(), party.getHostname(), party.getPort() + portOffset));
+        }
+        return shifted;
+    }
+
+    BackgroundDataSupplier createSupplier(SpdzDataSupplier producer) {
+        return new BackgroundDataSupplier(producer, tripleWatermarks[0], tripleWatermarks[1],
+            expPipeWatermarks[0], expPipeWatermarks[1]);
+    }
+}
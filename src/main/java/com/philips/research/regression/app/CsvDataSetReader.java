@@ -0,0 +1,58 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.util.DataSet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads comma separated rows, where the last column is the outcome and all
+ * other columns are predictors. Empty lines and lines starting with '#' are
+ * ignored, and so is a header line that does not start with a number.
+ */
+class CsvDataSetReader implements DataSetReader {
+
+    @Override
+    public DataSet read(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        DataSet.Builder builder = new DataSet.Builder();
+        double[] predictors = null;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (first && isHeader(fields)) {
+                first = false;
+                continue;
+            }
+            first = false;
+            if (predictors == null) {
+                predictors = new double[fields.length - 1];
+            }
+            if (fields.length != predictors.length + 1) {
+                throw new IllegalArgumentException(
+                    "Expected " + (predictors.length + 1) + " columns, but found: " + line);
+            }
+            for (int column = 0; column < predictors.length; column++) {
+                predictors[column] = Double.parseDouble(fields[column].trim());
+            }
+            builder.addPredictors(predictors);
+            builder.addOutcome(Double.parseDouble(fields[predictors.length].trim()));
+        }
+        return builder.build();
+    }
+
+    private static boolean isHeader(String[] fields) {
+        try {
+            Double.parseDouble(fields[0].trim());
+            return false;
+        } catch (NumberFormatException exception) {
+            return true;
+        }
+    }
+}
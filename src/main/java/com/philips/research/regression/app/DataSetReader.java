@@ -0,0 +1,14 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.util.DataSet;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Parses input data one row at a time, without keeping more than a single
+ * row in intermediate form.
+ */
+interface DataSetReader {
+    DataSet read(Reader reader) throws IOException;
+}
@@ -0,0 +1,135 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.logging.CountingDataSupplier;
+import com.philips.research.regression.logging.CountingStrategy;
+import com.philips.research.regression.logging.PhaseTracer;
+import com.philips.research.regression.logging.Phases;
+import com.philips.research.regression.network.CountingNetwork;
+import com.philips.research.regression.network.LoopbackNetwork;
+import dk.alexandra.fresco.framework.Application;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.builder.numeric.field.BigIntegerFieldDefinition;
+import dk.alexandra.fresco.framework.sce.SecureComputationEngine;
+import dk.alexandra.fresco.framework.sce.SecureComputationEngineImpl;
+import dk.alexandra.fresco.framework.sce.evaluator.BatchedProtocolEvaluator;
+import dk.alexandra.fresco.framework.util.AesCtrDrbg;
+import dk.alexandra.fresco.framework.util.ModulusFinder;
+import dk.alexandra.fresco.suite.spdz.SpdzProtocolSuite;
+import dk.alexandra.fresco.suite.spdz.SpdzResourcePool;
+import dk.alexandra.fresco.suite.spdz.SpdzResourcePoolImpl;
+import dk.alexandra.fresco.suite.spdz.gates.SpdzOutputToAllProtocol;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDummyDataSupplier;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzOpenedValueStoreImpl;
+import picocli.CommandLine;
+
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Evaluates an application with SPDZ for a single party, without a network,
+ * and counts the preprocessed material, openings and rounds of every phase
+ * with a {@link PhaseTracer}. The material comes from a dummy supplier, so none of it is generated for
+ * real.
+ * <p>
+ * The work of the parties is symmetric, except for inputs: when all parties
+ * hold data of the same shape, every party consumes as many input masks
+ * toward each party as are counted here.
+ */
+class DryRun {
+    static final int MAX_MASCOT_BATCH_SIZE = 1 << 16;
+    /**
+     * The Mascot batch size that stands for the suggestion of a dry run.
+     */
+    static final int AUTO_MASCOT_BATCH_SIZE = 0;
+
+    private final CountingStrategy<SpdzResourcePool> strategy;
+    private final CountingNetwork network = new CountingNetwork(new LoopbackNetwork());
+    private final PhaseTracer tracer;
+    private final SecureComputationEngine<SpdzResourcePool, ProtocolBuilderNumeric> sce;
+    private final SpdzResourcePool resourcePool;
+
+    DryRun(int modBitLength, int maxBitLength, int maxBatchSize) {
+        BigInteger modulus = ModulusFinder.findSuitableModulus(modBitLength);
+        BigIntegerFieldDefinition definition = new BigIntegerFieldDefinition(modulus);
+        BigInteger key = new BigInteger(modulus.bitLength(), new java.util.Random(0)).mod(modulus);
+        CountingDataSupplier supplier = new CountingDataSupplier(new SpdzDummyDataSupplier(1, 1, definition, key));
+        SpdzProtocolSuite protocolSuite = new SpdzProtocolSuite(maxBitLength, 16);
+        strategy = new CountingStrategy<>();
+        tracer = new PhaseTracer(network, strategy, supplier, SpdzOutputToAllProtocol.class);
+        sce = new SecureComputationEngineImpl<>(protocolSuite,
+            new BatchedProtocolEvaluator<>(strategy, protocolSuite, maxBatchSize));
+        resourcePool = new SpdzResourcePoolImpl(1, 1, new SpdzOpenedValueStoreImpl(), supplier, AesCtrDrbg::new);
+    }
+
+    <T> T run(Application<T, ProtocolBuilderNumeric> application) {
+        tracer.start();
+        Phases.setListener(tracer);
+        try {
+            return sce.runApplication(application, resourcePool, network);
+        } finally {
+            Phases.setListener(null);
+            tracer.finish();
+        }
+    }
+
+    List<PhaseTracer.Costs> getPhases() {
+        return tracer.getPhases();
+    }
+
+    PhaseTracer.Costs getTotal() {
+        return tracer.getTotal();
+    }
+
+    /**
+     * Mascot produces triples in batches. A batch that covers the most
+     * expensive phase means that no phase waits for Mascot more than once,
+     * without producing much more than the fit will use.
+     */
+    int suggestedMascotBatchSize() {
+        long triples = getPhases().stream().mapToLong(PhaseTracer.Costs::getTriples).max().orElse(1);
+        int batchSize = 1;
+        while (batchSize < triples && batchSize < MAX_MASCOT_BATCH_SIZE) {
+            batchSize *= 2;
+        }
+        return batchSize;
+    }
+
+    void print(PrintStream out) {
+        String format = "%-20s %12s %12s %12s %12s %12s %12s %12s%n";
+        out.printf(format, "phase", "triples", "input masks", "bits", "exp pipes", "random", "openings", "rounds");
+        for (PhaseTracer.Costs phase : getPhases()) {
+            print(out, format, phase);
+        }
+        print(out, format, getTotal());
+        out.println();
+        out.println("Suggested --mascot-batch-size: " + suggestedMascotBatchSize());
+    }
+
+    private static void print(PrintStream out, String format, PhaseTracer.Costs costs) {
+        out.printf(format, costs.getPhase(), costs.getTriples(), costs.getInputMasks(), costs.getBits(),
+            costs.getExpPipes(), costs.getRandomElements(), costs.getOpenings(), costs.getRounds());
+    }
+
+    void shutdown() {
+        sce.shutdownSCE();
+    }
+
+    /**
+     * Reads a Mascot batch size, or 'auto' for the suggestion of a dry run.
+     */
+    static class MascotBatchSizeConverter implements CommandLine.ITypeConverter<Integer> {
+        @Override
+        public Integer convert(String value) {
+            if (value.toLowerCase(Locale.ROOT).equals("auto")) {
+                return AUTO_MASCOT_BATCH_SIZE;
+            }
+            int batchSize = Integer.parseInt(value);
+            if (batchSize <= 0) {
+                throw new CommandLine.TypeConversionException("Expected a positive batch size or 'auto', got " + value);
+            }
+            return batchSize;
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package com.philips.research.regression.app;
 
+import com.philips.research.regression.checkpoint.Checkpoint;
+import com.philips.research.regression.checkpoint.CheckpointStore;
+import com.philips.research.regression.logging.Phases;
 import com.philips.research.regression.primitives.Cholesky;
-import com.philips.research.regression.primitives.Hessian;
-import com.philips.research.regression.primitives.LocalLogLikelihoodPrime;
+import com.philips.research.regression.primitives.Factorization;
+import com.philips.research.regression.primitives.LocalGradient;
+import com.philips.research.regression.primitives.TriangularInverse;
 import com.philips.research.regression.primitives.UpdateLearnedModel;
-import com.philips.research.regression.util.AddVectors;
 import com.philips.research.regression.util.ScaleVector;
 import com.philips.research.regression.util.SubtractVectors;
+import com.philips.research.regression.util.SumMatrices;
+import com.philips.research.regression.util.SumVectors;
 import com.philips.research.regression.util.VectorUtils;
 import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.builder.Computation;
@@ -16,6 +21,7 @@ import dk.alexandra.fresco.lib.real.SReal;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
 
@@ -27,131 +33,278 @@ import static java.math.BigDecimal.valueOf;
 import static java.util.Collections.nCopies;
 
 public class FitLogisticModel implements Computation<Vector<DRes<SReal>>, ProtocolBuilderNumeric> {
-    private final List<DRes<Matrix<DRes<SReal>>>> Xs;
+    private final List<DRes<Matrix<DRes<SReal>>>> hessians;
+    private final int numberOfInputs;
     private final double lambda;
     private final int numberOfIterations;
-    private final Matrix<BigDecimal> myX;
-    private final Vector<BigDecimal> myY;
+    private final double tolerance;
+    private final int choleskyBlockSize;
+    private final Solver solver;
+    private final LocalGradient localGradient;
     private final BigDecimal privacyBudget;
+    private final CheckpointStore checkpoints;
+    private final Checkpoint resumeFrom;
 
-    FitLogisticModel(List<DRes<Matrix<DRes<SReal>>>> Xs,
-                     double lambda, int numberOfIterations,
-                     Matrix<BigDecimal> myX, Vector<BigDecimal> myY) {
-        this.Xs = Xs;
-        this.lambda = lambda;
-        this.numberOfIterations = numberOfIterations;
-        this.myX = myX;
-        this.myY = myY;
-        this.privacyBudget = null;
+    /**
+     * @param hessians           the contributions of all parties to the approximated Hessian matrix, one per party
+     * @param numberOfInputs     the total number of rows of all parties
+     * @param numberOfIterations the maximum number of iterations
+     * @param tolerance          stops iterating once every element of beta changes by less than this in an
+     *                           iteration; 0 always runs the maximum number of iterations
+     * @param choleskyBlockSize  the block size of the Cholesky decomposition of the Hessian
+     * @param solver             how each iteration solves the equations given by the Cholesky factor
+     */
+    FitLogisticModel(List<DRes<Matrix<DRes<SReal>>>> hessians, int numberOfInputs,
+                     double lambda, int numberOfIterations, double tolerance,
+                     int choleskyBlockSize, Solver solver,
+                     LocalGradient localGradient) {
+        this(hessians, numberOfInputs, lambda, numberOfIterations, tolerance, choleskyBlockSize, solver,
+            localGradient, null, null, null);
     }
 
-    FitLogisticModel(List<DRes<Matrix<DRes<SReal>>>> Xs,
-                     double lambda, int numberOfIterations,
-                     Matrix<BigDecimal> myX, Vector<BigDecimal> myY,
+    FitLogisticModel(List<DRes<Matrix<DRes<SReal>>>> hessians, int numberOfInputs,
+                     double lambda, int numberOfIterations, double tolerance,
+                     int choleskyBlockSize, Solver solver,
+                     LocalGradient localGradient,
                      BigDecimal privacyBudget) {
-        this.Xs = Xs;
+        this(hessians, numberOfInputs, lambda, numberOfIterations, tolerance, choleskyBlockSize, solver,
+            localGradient, privacyBudget, null, null);
+    }
+
+    /**
+     * @param privacyBudget the privacy budget, or null when differential privacy is not used
+     * @param checkpoints   where to save a checkpoint after the decomposition and after every iteration
+     */
+    FitLogisticModel(List<DRes<Matrix<DRes<SReal>>>> hessians, int numberOfInputs,
+                     double lambda, int numberOfIterations, double tolerance,
+                     int choleskyBlockSize, Solver solver,
+                     LocalGradient localGradient,
+                     BigDecimal privacyBudget,
+                     CheckpointStore checkpoints) {
+        this(hessians, numberOfInputs, lambda, numberOfIterations, tolerance, choleskyBlockSize, solver,
+            localGradient, privacyBudget, checkpoints, null);
+    }
+
+    /**
+     * Continues a fit from a checkpoint, which already holds the decomposition of the Hessian.
+     */
+    FitLogisticModel(Checkpoint resumeFrom,
+                     double lambda, int numberOfIterations, double tolerance,
+                     LocalGradient localGradient,
+                     BigDecimal privacyBudget,
+                     CheckpointStore checkpoints) {
+        this(null, resumeFrom.getNumberOfInputs(), lambda, numberOfIterations, tolerance, 0, null,
+            localGradient, privacyBudget, checkpoints, resumeFrom);
+    }
+
+    private FitLogisticModel(List<DRes<Matrix<DRes<SReal>>>> hessians, int numberOfInputs,
+                             double lambda, int numberOfIterations, double tolerance,
+                             int choleskyBlockSize, Solver solver,
+                             LocalGradient localGradient,
+                             BigDecimal privacyBudget,
+                             CheckpointStore checkpoints,
+                             Checkpoint resumeFrom) {
+        this.hessians = hessians;
+        this.numberOfInputs = numberOfInputs;
         this.lambda = lambda;
         this.numberOfIterations = numberOfIterations;
-        this.myX = myX;
-        this.myY = myY;
+        this.tolerance = tolerance;
+        this.choleskyBlockSize = choleskyBlockSize;
+        this.solver = solver;
+        this.localGradient = localGradient;
         this.privacyBudget = privacyBudget;
+        this.checkpoints = checkpoints;
+        this.resumeFrom = resumeFrom;
     }
 
     @Override
     public DRes<Vector<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
         return builder.seq(seq -> {
+            if (resumeFrom != null) {
+                log(seq, () -> "Resuming after iteration " + resumeFrom.getIteration());
+                IterationState state = new IterationState(resumeFrom::getFactorization, resumeFrom::getBeta,
+                    resumeFrom.getOpenedBeta(), resumeFrom.getIteration(), resumeFrom.isFinished());
+                return () -> state;
+            }
             log(seq, "Started computation");
-            int width = Xs.get(0).out().getWidth();
+            int width = hessians.get(0).out().getWidth();
 
-            DRes<Matrix<DRes<SReal>>> L = seq.seq(new CholeskyDecompositionOfHessian());
+            DRes<Factorization> L = seq.seq(new CholeskyDecompositionOfHessian());
             DRes<Vector<DRes<SReal>>> beta = seq.realLinAlg().input(new Vector<>(nCopies(width, valueOf(0))), 1);
-            BigDecimal epsilon = privacyBudget != null
-                ? privacyBudget.divide(valueOf(numberOfIterations), 15, RoundingMode.HALF_UP)
-                : null;
-            for (int i=0; i<numberOfIterations; i++) {
-                log(seq, "Iteration " + i);
-                beta = seq.seq(new SingleIteration(beta, L, myX, myY, epsilon));
+            return () -> new IterationState(L, beta, null, 0, false);
+        }).seq((seq, state) -> {
+            if (resumeFrom == null) {
+                saveCheckpoint(state);
             }
+            return () -> state;
+        }).whileLoop(
+            state -> !state.finished && state.iteration < numberOfIterations,
+            (seq, state) -> {
+                Phases.start(seq, "iteration", state.iteration);
+                log(seq, () -> "Iteration " + state.iteration);
+                return seq.seq(new SingleIteration(state)).seq((inner, next) -> {
+                    saveCheckpoint(next);
+                    return () -> next;
+                });
+            }
+        ).seq((seq, state) -> state.beta);
+    }
 
-            return beta;
-        });
+    /**
+     * Saves the shares of a state once they have been computed. Writing
+     * happens in the background.
+     */
+    private void saveCheckpoint(IterationState state) {
+        if (checkpoints != null) {
+            checkpoints.save(new Checkpoint(state.iteration, state.finished, numberOfInputs,
+                state.L.out(), state.beta.out(), state.openedBeta));
+        }
+    }
+
+    /**
+     * Splits the privacy budget evenly over the maximum number of
+     * iterations. When the model converges earlier, the final iteration
+     * receives whatever is left of the budget.
+     */
+    private BigDecimal epsilon(int iteration, boolean finalIteration) {
+        return epsilon(privacyBudget, numberOfIterations, iteration, finalIteration);
+    }
+
+    static BigDecimal epsilon(BigDecimal privacyBudget, int numberOfIterations, int iteration,
+                              boolean finalIteration) {
+        if (privacyBudget == null) {
+            return null;
+        }
+        int iterations = finalIteration ? numberOfIterations - iteration : 1;
+        return privacyBudget.multiply(valueOf(iterations)).divide(valueOf(numberOfIterations), 15, RoundingMode.HALF_UP);
+    }
+
+    private boolean hasConverged(Vector<BigDecimal> previousBeta, Vector<BigDecimal> beta) {
+        if (previousBeta == null) {
+            return false;
+        }
+        for (int i = 0; i < beta.size(); i++) {
+            if (beta.get(i).subtract(previousBeta.get(i)).abs().doubleValue() >= tolerance) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private static Matrix<BigDecimal> scale(double factor, Matrix<BigDecimal> matrix) {
         return map(matrix, valueOf(factor)::multiply);
     }
 
-    private class CholeskyDecompositionOfHessian implements Computation<Matrix<DRes<SReal>>, ProtocolBuilderNumeric> {
+    private class CholeskyDecompositionOfHessian implements Computation<Factorization, ProtocolBuilderNumeric> {
 
         @Override
-        public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+        public DRes<Factorization> buildComputation(ProtocolBuilderNumeric builder) {
             return builder.seq(seq -> {
-                int width = Xs.get(0).out().getWidth();
+                int width = hessians.get(0).out().getWidth();
 
-                log(seq, "Compute hessian");
-                DRes<Matrix<DRes<SReal>>> H = null;
-                for (DRes<Matrix<DRes<SReal>>> X: Xs) {
-                    DRes<Matrix<DRes<SReal>>> hessian = seq.seq(new Hessian(X));
-                    H = H == null ? hessian : seq.realLinAlg().add(H, hessian);
-                }
+                Phases.start(seq, "cholesky");
+                log(seq, "Sum hessians");
+                DRes<Matrix<DRes<SReal>>> H = seq.seq(new SumMatrices(hessians));
 
                 log(seq, "Cholesky");
                 Matrix<BigDecimal> I = identity(width);
                 H = seq.realLinAlg().sub(H, scale(lambda, I));
-                return seq.seq(new Cholesky(seq.realLinAlg().scale(valueOf(-1), H)));
+                return seq.seq(new Cholesky(seq.realLinAlg().scale(valueOf(-1), H), choleskyBlockSize).factorization());
+            }).seq((seq, factorization) -> {
+                int width = factorization.getL().getWidth();
+                if (!solver.usesInverse(width, numberOfIterations)) {
+                    return () -> factorization;
+                }
+                log(seq, "Invert Cholesky factor");
+                DRes<Matrix<DRes<SReal>>> inverse = seq.seq(
+                    new TriangularInverse(factorization::getL, factorization.getDiagonalReciprocals()));
+                return () -> factorization.withInverse(inverse.out());
             });
         }
     }
 
-    private class SingleIteration implements Computation<Vector<DRes<SReal>>, ProtocolBuilderNumeric> {
-        private final DRes<Vector<DRes<SReal>>> beta;
-        private final DRes<Matrix<DRes<SReal>>> L;
-        private final Matrix<BigDecimal> myX;
-        private final Vector<BigDecimal> myY;
-        private final BigDecimal epsilon;
-
-        private SingleIteration(DRes<Vector<DRes<SReal>>> initialBeta, DRes<Matrix<DRes<SReal>>> L,
-                                Matrix<BigDecimal> myX, Vector<BigDecimal> myY,
-                                BigDecimal epsilon) {
-            this.beta = initialBeta;
+    private static class IterationState {
+        final DRes<Factorization> L;
+        final DRes<Vector<DRes<SReal>>> beta;
+        final Vector<BigDecimal> openedBeta;
+        final int iteration;
+        final boolean finished;
+
+        IterationState(DRes<Factorization> L, DRes<Vector<DRes<SReal>>> beta, Vector<BigDecimal> openedBeta,
+                       int iteration, boolean finished) {
             this.L = L;
-            this.myX = myX;
-            this.myY = myY;
-            this.epsilon = epsilon;
+            this.beta = beta;
+            this.openedBeta = openedBeta;
+            this.iteration = iteration;
+            this.finished = finished;
+        }
+    }
+
+    private class SingleIteration implements Computation<IterationState, ProtocolBuilderNumeric> {
+        private final IterationState state;
+        private final DRes<Vector<DRes<SReal>>> beta;
+
+        private SingleIteration(IterationState state) {
+            this.state = state;
+            this.beta = state.beta;
         }
 
         @Override
-        public DRes<Vector<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+        public DRes<IterationState> buildComputation(ProtocolBuilderNumeric builder) {
             return builder.seq(seq -> {
                 DRes<Vector<DRes<BigDecimal>>> openBeta = seq.realLinAlg().openVector(beta);
                 return () -> openBeta;
             }).seq((seq, openBeta) -> {
                 Vector<BigDecimal> unwrappedBeta = unwrapVector(openBeta);
-                log(seq, "    beta is now " + unwrappedBeta);
-                DRes<Vector<DRes<SReal>>> lprime = null;
-                for (int party=1; party<=Xs.size(); party++) {
-                    log(seq, "    logLikelihoodPrime " + party);
-                    DRes<Vector<DRes<SReal>>> logLikelihoodPrime;
-                    if (party == builder.getBasicNumericContext().getMyId()) {
-                        Vector<BigDecimal> localLogLikelihoodPrime = new LocalLogLikelihoodPrime(myX, myY, unwrappedBeta).compute();
-                        logLikelihoodPrime = seq.realLinAlg().input(localLogLikelihoodPrime, party);
-                    } else {
-                        Vector<BigDecimal> dummyVector = VectorUtils.vectorWithZeros(beta.out().size());
-                        logLikelihoodPrime = seq.realLinAlg().input(dummyVector, party);
-                    }
-                    if (lprime == null) {
-                        lprime = logLikelihoodPrime;
-                    } else {
-                        lprime = seq.par(new AddVectors(lprime, logLikelihoodPrime));
-                    }
+                log(seq, () -> "    beta is now " + unwrappedBeta);
+                boolean converged = hasConverged(state.openedBeta, unwrappedBeta);
+                if (converged && privacyBudget == null) {
+                    log(seq, "    converged");
+                    // Numbered on its own, so its checkpoint does not replace that of the
+                    // previous iteration; a party that crashes while writing it can then
+                    // still agree with the others on an unfinished state to resume from
+                    return () -> new IterationState(state.L, beta, unwrappedBeta, state.iteration + 1, true);
                 }
+                if (converged) {
+                    log(seq, "    converged, spending the remaining privacy budget on a final iteration");
+                }
+                BigDecimal epsilon = epsilon(state.iteration, converged);
+                DRes<Vector<DRes<SReal>>> updatedBeta = seq.seq(new Update(unwrappedBeta, epsilon));
+                return () -> new IterationState(state.L, updatedBeta, unwrappedBeta, state.iteration + 1, converged);
+            });
+        }
 
-                lprime = seq.par(new SubtractVectors(lprime, seq.par(new ScaleVector(valueOf(lambda), beta))));
-                log(seq, "    update learned model");
+        private class Update implements Computation<Vector<DRes<SReal>>, ProtocolBuilderNumeric> {
+            private final Vector<BigDecimal> unwrappedBeta;
+            private final BigDecimal epsilon;
 
-                return seq.seq(new UpdateLearnedModel(L, beta, lprime, epsilon, valueOf(lambda), Xs.size(), Xs.get(0).out().getHeight() * Xs.size()));
-            });
+            private Update(Vector<BigDecimal> unwrappedBeta, BigDecimal epsilon) {
+                this.unwrappedBeta = unwrappedBeta;
+                this.epsilon = epsilon;
+            }
+
+            @Override
+            public DRes<Vector<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+                log(builder, "    logLikelihoodPrime");
+                return builder.par(par -> {
+                    int numberOfParties = par.getBasicNumericContext().getNoOfParties();
+                    List<DRes<Vector<DRes<SReal>>>> inputs = new ArrayList<>();
+                    for (int party = 1; party <= numberOfParties; party++) {
+                        Vector<BigDecimal> gradient = party == par.getBasicNumericContext().getMyId()
+                            ? localGradient.compute(unwrappedBeta)
+                            : VectorUtils.vectorWithZeros(unwrappedBeta.size());
+                        inputs.add(par.realLinAlg().input(gradient, party));
+                    }
+                    return () -> inputs;
+                }).seq((seq, gradients) -> {
+                    int numberOfParties = seq.getBasicNumericContext().getNoOfParties();
+                    DRes<Vector<DRes<SReal>>> lprime = seq.seq(new SumVectors(gradients));
+                    lprime = seq.par(new SubtractVectors(lprime, seq.par(new ScaleVector(valueOf(lambda), beta))));
+                    log(seq, "    update learned model");
+
+                    return seq.seq(new UpdateLearnedModel(state.L, beta, lprime, epsilon, valueOf(lambda), numberOfParties, numberOfInputs));
+                });
+            }
         }
     }
 }
-
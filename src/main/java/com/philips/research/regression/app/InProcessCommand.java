@@ -0,0 +1,29 @@
+package com.philips.research.regression.app;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(
+    name = "in-process",
+    description = "Runs all parties in this process, connected by an in-memory network instead of sockets. Every data file holds the data of one party, in the order of the party ids. The options that are shared by all parties, such as --lambda, go before the subcommand; --myId and --party are not needed.",
+    mixinStandardHelpOptions = true)
+class InProcessCommand implements Callable<Void> {
+    @CommandLine.ParentCommand
+    private LogisticRegressionApp app;
+    @Parameters(
+        arity = "2..*",
+        paramLabel = "FILE",
+        description = "Data file of each party, in the format given by --input-format.")
+    private List<Path> dataFiles;
+
+    @Override
+    public Void call() throws IOException {
+        app.runInProcess(dataFiles);
+        return null;
+    }
+}
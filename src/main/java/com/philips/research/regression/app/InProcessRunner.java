@@ -0,0 +1,56 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.network.InMemoryNetwork;
+import dk.alexandra.fresco.framework.network.Network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a computation for every party in a thread of its own, with the
+ * parties connected by an {@link InMemoryNetwork}.
+ */
+class InProcessRunner {
+
+    interface PartyComputation<T> {
+        T run(int myId, Network network) throws Exception;
+    }
+
+    /**
+     * @return the outcome of every party, ordered by party id
+     */
+    static <T> List<T> run(int numberOfParties, PartyComputation<T> computation) {
+        List<InMemoryNetwork> networks = InMemoryNetwork.connect(numberOfParties);
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfParties);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int party = 1; party <= numberOfParties; party++) {
+                int myId = party;
+                InMemoryNetwork network = networks.get(party - 1);
+                futures.add(executor.submit(() -> {
+                    try {
+                        return computation.run(myId, network);
+                    } finally {
+                        network.close();
+                    }
+                }));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Party failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the parties", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.philips.research.regression.app;
+
+import picocli.CommandLine;
+
+import java.util.Locale;
+
+enum InputFormat {
+    JSON(new JsonDataSetReader()),
+    CSV(new CsvDataSetReader());
+
+    private final DataSetReader reader;
+
+    InputFormat(DataSetReader reader) {
+        this.reader = reader;
+    }
+
+    DataSetReader getReader() {
+        return reader;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static class Converter implements CommandLine.ITypeConverter<InputFormat> {
+        @Override
+        public InputFormat convert(String value) {
+            return InputFormat.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.philips.research.regression.app;
+
+import com.google.gson.stream.JsonReader;
+import com.philips.research.regression.util.DataSet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads an object with a 'predictors' array of rows and an 'outcomes' array.
+ * Just like Gson's default parsing, comments and unquoted names are allowed.
+ */
+class JsonDataSetReader implements DataSetReader {
+
+    @Override
+    public DataSet read(Reader input) throws IOException {
+        JsonReader reader = new JsonReader(input);
+        reader.setLenient(true);
+        DataSet.Builder builder = new DataSet.Builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "predictors":
+                    readPredictors(reader, builder);
+                    break;
+                case "outcomes":
+                    readOutcomes(reader, builder);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return builder.build();
+    }
+
+    private static void readPredictors(JsonReader reader, DataSet.Builder builder) throws IOException {
+        double[] row = new double[16];
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int width = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (width == row.length) {
+                    row = Arrays.copyOf(row, 2 * width);
+                }
+                row[width++] = reader.nextDouble();
+            }
+            reader.endArray();
+            builder.addPredictors(Arrays.copyOf(row, width));
+        }
+        reader.endArray();
+    }
+
+    private static void readOutcomes(JsonReader reader, DataSet.Builder builder) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            builder.addOutcome(reader.nextDouble());
+        }
+        reader.endArray();
+    }
+}
@@ -1,88 +1,244 @@
 package com.philips.research.regression.app;
 
+import com.philips.research.regression.checkpoint.Checkpoint;
+import com.philips.research.regression.checkpoint.CheckpointStore;
+import com.philips.research.regression.logging.Phases;
+import com.philips.research.regression.primitives.Hessian;
+import com.philips.research.regression.primitives.LocalGradient;
+import com.philips.research.regression.primitives.LocalHessian;
+import com.philips.research.regression.util.DataSet;
+import com.philips.research.regression.util.SumMatrices;
 import dk.alexandra.fresco.framework.Application;
 import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
 import dk.alexandra.fresco.lib.collections.Matrix;
-import dk.alexandra.fresco.lib.real.RealLinearAlgebra;
 import dk.alexandra.fresco.lib.real.SReal;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.philips.research.regression.util.ListConversions.unwrap;
 import static com.philips.research.regression.util.MatrixConstruction.matrixWithZeros;
-import static com.philips.research.regression.util.VectorUtils.vectorWithZeros;
 import static java.math.BigDecimal.valueOf;
 
-class LogisticRegression implements Application<List<BigDecimal>, ProtocolBuilderNumeric> {
+class LogisticRegression implements Application<List<List<BigDecimal>>, ProtocolBuilderNumeric> {
     private final int myId;
-    private final Matrix<BigDecimal> matrix;
-    private final Vector<BigDecimal> vector;
-    private final double lambda;
+    private final DataSet data;
+    private final LocalGradient localGradient;
+    private final LocalHessian localHessian;
+    private final List<Double> lambdas;
     private final int iterations;
+    private final double tolerance;
     private final double privacyBudget;
+    private final int choleskyBlockSize;
+    private final Solver solver;
+    private final CheckpointStore checkpoints;
+    private final boolean resume;
 
-    LogisticRegression(int myId, Matrix<BigDecimal> matrix, Vector<BigDecimal> vector, double lambda, int iterations, double privacyBudget) {
+    /**
+     * @param localHessian computes this party's contribution to the Hessian in the clear; when null, the
+     *                     predictors of all parties are secret shared and the Hessian is computed securely
+     * @param lambdas      the regularization parameters; a model is fitted for each of them, reusing the Hessian
+     * @param checkpoints  where the fit state is saved, or null when checkpointing is disabled
+     * @param resume       whether to continue from the last checkpoint that all parties have in common
+     */
+    LogisticRegression(int myId, DataSet data, LocalGradient localGradient, LocalHessian localHessian,
+                       List<Double> lambdas, int iterations, double tolerance, double privacyBudget,
+                       int choleskyBlockSize, Solver solver, CheckpointStore checkpoints, boolean resume) {
         this.myId = myId;
-        this.matrix = new MatrixWithIntercept(matrix);
-        this.vector =  vector;
-        this.lambda = lambda;
+        this.data = data;
+        this.localGradient = localGradient;
+        this.localHessian = localHessian;
+        if (lambdas.isEmpty()) {
+            throw new IllegalArgumentException("Expected at least one lambda");
+        }
+        if (resume && lambdas.size() > 1) {
+            throw new IllegalArgumentException("Only a fit with a single lambda can be resumed");
+        }
+        this.lambdas = lambdas;
         this.iterations = iterations;
+        this.tolerance = tolerance;
         this.privacyBudget = privacyBudget;
+        this.choleskyBlockSize = choleskyBlockSize;
+        this.solver = solver;
+        this.checkpoints = checkpoints;
+        this.resume = resume;
     }
 
     @Override
-    public DRes<List<BigDecimal>> buildComputation(ProtocolBuilderNumeric builder) {
+    public DRes<List<List<BigDecimal>>> buildComputation(ProtocolBuilderNumeric builder) {
+        return builder.seq(this::agreeOnCheckpoint).seq((seq, iteration) -> {
+            if (iteration < 0) {
+                return seq.seq(this::fit);
+            }
+            DRes<Vector<DRes<SReal>>> result = seq.seq(
+                new FitLogisticModel(load(iteration), lambdas.get(0), iterations, tolerance, localGradient, budget(), checkpoints));
+            return () -> Collections.singletonList(result);
+        }).par((par, results) -> {
+            Phases.start(par, "output");
+            List<DRes<Vector<DRes<BigDecimal>>>> opened = new ArrayList<>();
+            for (DRes<Vector<DRes<SReal>>> result : results) {
+                opened.add(par.realLinAlg().openVector(result));
+            }
+            return () -> {
+                List<List<BigDecimal>> models = new ArrayList<>();
+                for (DRes<Vector<DRes<BigDecimal>>> model : opened) {
+                    models.add(unwrap(model));
+                }
+                return models;
+            };
+        });
+    }
+
+    /**
+     * Sums the contributions of the parties to the Hessian once, and then
+     * fits a model for every lambda side by side. Only the Cholesky
+     * decomposition and the iterations depend on lambda.
+     */
+    private DRes<List<DRes<Vector<DRes<SReal>>>>> fit(ProtocolBuilderNumeric builder) {
+        Phases.start(builder, "input");
         return builder.par(par -> {
-            DRes<Matrix<DRes<SReal>>> x1, x2;
-            DRes<Vector<DRes<SReal>>> y1, y2;
-            RealLinearAlgebra linAlg = par.realLinAlg();
-            if (myId == 1) {
-                x1 = linAlg.input(matrix, 1);
-                y1 = linAlg.input(vector, 1);
-                x2 = linAlg.input(matrixWithZeros(matrix.getHeight(), matrix.getWidth()), 2);
-                y2 = linAlg.input(vectorWithZeros(vector.size()), 2);
-            } else {
-                x1 = linAlg.input(matrixWithZeros(matrix.getHeight(), matrix.getWidth()), 1);
-                y1 = linAlg.input(vectorWithZeros(vector.size()), 1);
-                x2 = linAlg.input(matrix, 2);
-                y2 = linAlg.input(vector, 2);
+            DRes<List<DRes<Matrix<DRes<SReal>>>>> hessians = localHessian != null
+                ? par.seq(this::inputLocalHessians)
+                : par.seq(this::computeSecureHessians);
+            DRes<BigInteger> numberOfInputs = par.seq(this::countInputs);
+            return () -> new Pair<>(hessians.out(), numberOfInputs.out().intValue());
+        }).seq((seq, inputs) -> {
+            Phases.start(seq, "hessian");
+            DRes<Matrix<DRes<SReal>>> hessian = seq.seq(new SumMatrices(inputs.getFirst()));
+            int numberOfInputs = inputs.getSecond();
+            return () -> new Pair<>(hessian, numberOfInputs);
+        }).par((par, inputs) -> {
+            List<DRes<Matrix<DRes<SReal>>>> hessian = Collections.singletonList(inputs.getFirst());
+            int numberOfInputs = inputs.getSecond();
+            CheckpointStore store = lambdas.size() == 1 ? checkpoints : null;
+            List<DRes<Vector<DRes<SReal>>>> results = new ArrayList<>();
+            for (double lambda : lambdas) {
+                results.add(par.seq(new FitLogisticModel(hessian, numberOfInputs, lambda, iterations, tolerance,
+                    choleskyBlockSize, solver, localGradient, budget(), store)));
             }
+            return () -> results;
+        });
+    }
 
-            List<DRes<Matrix<DRes<SReal>>>> closedXs = new ArrayList<>();
-            closedXs.add(x1);
-            closedXs.add(x2);
+    /**
+     * Every released model spends privacy budget, so the budget is split
+     * evenly over the lambdas.
+     */
+    private BigDecimal budget() {
+        if (privacyBudget <= 0) {
+            return null;
+        }
+        return valueOf(privacyBudget).divide(valueOf(lambdas.size()), 15, RoundingMode.HALF_UP);
+    }
 
-            List<DRes<Vector<DRes<SReal>>>> closedYs = new ArrayList<>();
-            closedYs.add(y1);
-            closedYs.add(y2);
+    /**
+     * Determines the last iteration for which every party has a checkpoint,
+     * or -1 when the fit has to start from scratch. The parties may have
+     * been stopped while a checkpoint was still being written, so their
+     * latest checkpoints need not be the same.
+     */
+    private DRes<Integer> agreeOnCheckpoint(ProtocolBuilderNumeric builder) {
+        if (!resume || checkpoints == null) {
+            return () -> -1;
+        }
+        int latest = latestIteration();
+        return builder.par(par -> {
+            List<DRes<BigInteger>> iterations = new ArrayList<>();
+            for (int party = 1; party <= par.getBasicNumericContext().getNoOfParties(); party++) {
+                int inputParty = party;
+                BigInteger next = party == myId ? BigInteger.valueOf(latest + 1) : BigInteger.ZERO;
+                iterations.add(par.seq(seq -> seq.numeric().open(seq.numeric().input(next, inputParty))));
+            }
+            return () -> iterations;
+        }).seq((seq, iterations) -> {
+            int common = iterations.stream().mapToInt(iteration -> iteration.out().intValue()).min().orElse(0);
+            return () -> common - 1;
+        });
+    }
 
-            return () -> new Pair<>(closedXs, closedYs);
-        }).seq((seq, inputs) -> {
-            List<DRes<Matrix<DRes<SReal>>>> closedXs = inputs.getFirst();
+    private int latestIteration() {
+        try {
+            return checkpoints.latestIteration();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Checkpoint load(int iteration) {
+        try {
+            return checkpoints.load(iteration);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Opens the total number of rows of all parties, which is needed to
+     * calibrate the noise for differential privacy. The row counts of the
+     * individual parties remain secret.
+     */
+    private DRes<BigInteger> countInputs(ProtocolBuilderNumeric builder) {
+        return builder.par(par -> {
+            List<DRes<SInt>> counts = new ArrayList<>();
+            for (int party = 1; party <= par.getBasicNumericContext().getNoOfParties(); party++) {
+                BigInteger count = party == myId ? BigInteger.valueOf(data.getHeight()) : BigInteger.ZERO;
+                counts.add(par.numeric().input(count, party));
+            }
+            return () -> counts;
+        }).seq((seq, counts) -> seq.numeric().open(seq.advancedNumeric().sum(counts)));
+    }
 
-            DRes<Vector<DRes<SReal>>> result = privacyBudget > 0
-                ? seq.seq(new FitLogisticModel(closedXs, lambda, iterations, matrix, vector, valueOf(privacyBudget)))
-                : seq.seq(new FitLogisticModel(closedXs, lambda, iterations, matrix, vector));
-            DRes<Vector<DRes<BigDecimal>>> opened = seq.realLinAlg().openVector(result);
-            return () -> unwrap(opened);
+    private DRes<List<DRes<Matrix<DRes<SReal>>>>> inputLocalHessians(ProtocolBuilderNumeric builder) {
+        return builder.par(par -> {
+            int width = data.getWidth();
+            List<DRes<Matrix<DRes<SReal>>>> hessians = new ArrayList<>();
+            for (int party = 1; party <= par.getBasicNumericContext().getNoOfParties(); party++) {
+                Matrix<BigDecimal> hessian = party == myId ? localHessian.compute() : matrixWithZeros(width, width);
+                hessians.add(par.realLinAlg().input(hessian, party));
+            }
+            return () -> hessians;
         });
     }
-}
 
-class MatrixWithIntercept extends Matrix<BigDecimal> {
-    MatrixWithIntercept(Matrix<BigDecimal> matrix) {
-        super(matrix.getHeight(), matrix.getWidth() + 1, (rowNumber) -> {
-            ArrayList<BigDecimal> row = matrix.getRow(rowNumber);
-            return Stream
-                .concat(row.stream(), Stream.of(valueOf(1)))
-                .collect(Collectors.toCollection(ArrayList::new));
+    /**
+     * Inputs the predictors of all parties. The dimensions of an input must be
+     * known to everyone, so the row counts of the parties are opened first.
+     */
+    private DRes<List<DRes<Matrix<DRes<SReal>>>>> computeSecureHessians(ProtocolBuilderNumeric builder) {
+        Matrix<BigDecimal> matrix = data.toMatrix();
+        return builder.par(par -> {
+            List<DRes<BigInteger>> heights = new ArrayList<>();
+            for (int party = 1; party <= par.getBasicNumericContext().getNoOfParties(); party++) {
+                int inputParty = party;
+                BigInteger height = party == myId ? BigInteger.valueOf(matrix.getHeight()) : BigInteger.ZERO;
+                heights.add(par.seq(seq -> seq.numeric().open(seq.numeric().input(height, inputParty))));
+            }
+            return () -> heights;
+        }).par((par, heights) -> {
+            List<DRes<Matrix<DRes<SReal>>>> closedXs = new ArrayList<>();
+            for (int party = 1; party <= heights.size(); party++) {
+                Matrix<BigDecimal> X = party == myId
+                    ? matrix
+                    : matrixWithZeros(heights.get(party - 1).out().intValue(), matrix.getWidth());
+                closedXs.add(par.realLinAlg().input(X, party));
+            }
+            return () -> closedXs;
+        }).par((par, closedXs) -> {
+            List<DRes<Matrix<DRes<SReal>>>> hessians = new ArrayList<>();
+            for (DRes<Matrix<DRes<SReal>>> X : closedXs) {
+                hessians.add(par.seq(new Hessian(X)));
+            }
+            return () -> hessians;
         });
     }
 }
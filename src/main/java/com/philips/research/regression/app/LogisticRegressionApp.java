@@ -2,7 +2,29 @@ package com.philips.research.regression.app;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
-import com.google.gson.Gson;
+import com.philips.research.regression.checkpoint.CheckpointStore;
+import com.philips.research.regression.checkpoint.DummyShareSerializer;
+import com.philips.research.regression.checkpoint.ShareSerializer;
+import com.philips.research.regression.checkpoint.SpdzShareSerializer;
+import com.philips.research.regression.logging.CountingDataSupplier;
+import com.philips.research.regression.logging.CountingStrategy;
+import com.philips.research.regression.logging.FlightRecorderPhases;
+import com.philips.research.regression.logging.FlightRecorderStrategy;
+import com.philips.research.regression.logging.MetricsServer;
+import com.philips.research.regression.logging.PhaseListener;
+import com.philips.research.regression.logging.PhaseTracer;
+import com.philips.research.regression.logging.Phases;
+import com.philips.research.regression.logging.ProgressMetrics;
+import com.philips.research.regression.network.CoalescingSocketNetwork;
+import com.philips.research.regression.network.CountingNetwork;
+import com.philips.research.regression.network.WaitTimingNetwork;
+import com.philips.research.regression.preprocessing.BackgroundDataSupplier;
+import com.philips.research.regression.preprocessing.FileBackedDataSupplier;
+import com.philips.research.regression.preprocessing.Preprocessor;
+import com.philips.research.regression.primitives.Cholesky;
+import com.philips.research.regression.primitives.LocalGradient;
+import com.philips.research.regression.primitives.LocalHessian;
+import com.philips.research.regression.util.DataSet;
 import dk.alexandra.fresco.framework.Application;
 import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.Party;
@@ -20,10 +42,9 @@ import dk.alexandra.fresco.framework.sce.SecureComputationEngineImpl;
 import dk.alexandra.fresco.framework.sce.evaluator.BatchEvaluationStrategy;
 import dk.alexandra.fresco.framework.sce.evaluator.BatchedProtocolEvaluator;
 import dk.alexandra.fresco.framework.sce.evaluator.BatchedStrategy;
-import dk.alexandra.fresco.framework.sce.evaluator.EvaluationStrategy;
+import dk.alexandra.fresco.framework.sce.resources.ResourcePool;
 import dk.alexandra.fresco.framework.util.*;
 import dk.alexandra.fresco.framework.value.SInt;
-import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.logging.BatchEvaluationLoggingDecorator;
 import dk.alexandra.fresco.logging.EvaluatorLoggingDecorator;
 import dk.alexandra.fresco.logging.NetworkLoggingDecorator;
@@ -35,6 +56,7 @@ import dk.alexandra.fresco.suite.spdz.SpdzProtocolSuite;
 import dk.alexandra.fresco.suite.spdz.SpdzResourcePool;
 import dk.alexandra.fresco.suite.spdz.SpdzResourcePoolImpl;
 import dk.alexandra.fresco.suite.spdz.datatypes.SpdzSInt;
+import dk.alexandra.fresco.suite.spdz.gates.SpdzOutputToAllProtocol;
 import dk.alexandra.fresco.suite.spdz.storage.SpdzDataSupplier;
 import dk.alexandra.fresco.suite.spdz.storage.SpdzDummyDataSupplier;
 import dk.alexandra.fresco.suite.spdz.storage.SpdzMascotDataSupplier;
@@ -52,44 +74,56 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import static com.philips.research.regression.util.MatrixConstruction.matrix;
-import static com.philips.research.regression.util.MatrixConversions.map;
-import static com.philips.research.regression.util.VectorUtils.vectorOf;
-
 @CommandLine.Command(
     description = "Secure Multi-Party Logistic Regression",
     name="LogisticRegression",
     mixinStandardHelpOptions = true,
+    subcommands = {PreprocessCommand.class, InProcessCommand.class},
     version = "Logistic Regression 0.1.0")
 public class LogisticRegressionApp implements Callable<Void> {
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
     @Option(
         names = {"-i", "--myId"},
-        required = true,
-        description = "Id of this party.")
-    private int myId;
+        description = "Id of this party. Required, except with the in-process subcommand.")
+    private Integer myId;
     @Option(
         names = {"-p", "--party"},
-        required = true,
         split=":",
-        description = "Specification of a party. One of these needs to be present for each party. For example: '-p1:localhost:8871 -p2:localhost:8872'.")
+        description = "Specification of a party. One of these needs to be present for each party. For example: '-p1:localhost:8871 -p2:localhost:8872'. Required, except with the in-process subcommand.")
     private String[] parties;
     @Option(
         names = {"--lambda"},
         defaultValue = "1.0",
         description = "Lambda for fitting the logistic model. If omitted, the default value is ${DEFAULT-VALUE}.")
     private double lambda;
+    @Option(
+        names = {"--lambdas"},
+        split = ",",
+        description = "Comma separated lambdas, for example '0.1,1,10'. Fits a model for each of them in a single session, computing the Hessian only once; the privacy budget is split evenly over the models. Checkpoints are only saved, and a fit can only be resumed, when a single lambda is given. Overrides --lambda."
+    )
+    private List<Double> lambdas;
     @Option(
         names = {"--iterations"},
         defaultValue = "5",
         description = "The number of iterations performed by the fitter. If omitted, the default value is ${DEFAULT-VALUE}.")
     private int iterations;
+    @Option(
+        names = {"--tolerance"},
+        defaultValue = "0",
+        description = "Stops iterating once no element of the opened model changes by this much in an iteration. With differential privacy, the remaining budget is spent on one final iteration. If omitted, all iterations are performed."
+    )
+    private double tolerance;
     @Option(
         names = {"--privacy-budget", "-b"},
         defaultValue = "0",
@@ -132,6 +166,151 @@ public class LogisticRegressionApp implements Callable<Void> {
         description = "For experimenting; default is 200"
     )
     private int maxBitLength;
+    @Option(
+        names = {"--strategy"},
+        defaultValue = "sequential",
+        converter = Strategy.Converter.class,
+        description = "Strategy used for evaluating batches of native protocols; either 'sequential' or 'batched'. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private Strategy strategy;
+    @Option(
+        names = {"--max-batch-size"},
+        defaultValue = "4096",
+        description = "Maximum number of native protocols that are evaluated in a single batch. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private int maxBatchSize;
+    @Option(
+        names = {"--input-format"},
+        defaultValue = "json",
+        converter = InputFormat.Converter.class,
+        description = "Format of the data read from standard input; either 'json' or 'csv'. CSV rows contain the predictors followed by the outcome. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private InputFormat inputFormat;
+    @Option(
+        names = {"--reference-gradient"},
+        defaultValue = "false",
+        description = "Computes the local gradient using the slow BigDecimal reference implementation, for validation purposes"
+    )
+    private boolean referenceGradient;
+    @Option(
+        names = {"--threads"},
+        description = "Number of threads used for computations on the local data. If omitted, all available processors are used."
+    )
+    private int threads = Runtime.getRuntime().availableProcessors();
+    @Option(
+        names = {"--secure-hessian"},
+        defaultValue = "false",
+        description = "Secret shares the predictors of all parties and computes the Hessian securely, instead of letting each party compute its contribution to the Hessian locally"
+    )
+    private boolean secureHessian;
+    @Option(
+        names = {"--cholesky-block-size"},
+        defaultValue = "" + Cholesky.DEFAULT_BLOCK_SIZE,
+        description = "Number of columns that the Cholesky decomposition factors before updating the remaining columns. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private int choleskyBlockSize;
+    @Option(
+        names = {"--solver"},
+        defaultValue = "auto",
+        converter = Solver.Converter.class,
+        description = "How each iteration solves the equations given by the Cholesky factor; either 'substitution', 'inverse' or 'auto', which inverts the factor when that saves rounds over the iterations. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private Solver solver;
+    @Option(
+        names = {"--checkpoint-dir"},
+        description = "Directory in which the state of the fit is saved after every iteration, so that it can be resumed after a restart. If omitted, no checkpoints are saved."
+    )
+    private Path checkpointDirectory;
+    @Option(
+        names = {"--resume"},
+        defaultValue = "false",
+        description = "Continues from the last iteration that all parties saved in the checkpoint directory, instead of starting a new fit"
+    )
+    private boolean resume;
+    @Option(
+        names = {"--preprocessed"},
+        description = "Directory with material generated by the preprocess command. SPDZ consumes this material instead of running Mascot during the computation. If omitted, Mascot is used. With --resume, it has to be the material the checkpoints were made with; material left in use by a run that crashed is then taken over, skipping everything that run may have used."
+    )
+    private Path preprocessedDirectory;
+    @Option(
+        names = {"--mascot-batch-size"},
+        defaultValue = "1024",
+        converter = DryRun.MascotBatchSizeConverter.class,
+        description = "Number of triples that Mascot generates at once, or 'auto' to use the value that --dry-run suggests for the data of this party, at the cost of a dry run before the fit. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private int mascotBatchSize;
+    @Option(
+        names = {"--exp-pipe-batch-size"},
+        defaultValue = "" + PreprocessedValuesSupplier.DEFAULT_BATCH_SIZE,
+        description = "Number of exponentiation pipes that are generated at once when they run out. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private int expPipeBatchSize;
+    @Option(
+        names = {"--background-preprocessing"},
+        defaultValue = "false",
+        description = "Produces Mascot triples and exponentiation pipes in a background thread, ahead of the computation, over a second connection between the parties"
+    )
+    private boolean backgroundPreprocessing;
+    @Option(
+        names = {"--preprocessing-port-offset"},
+        defaultValue = "100",
+        description = "With --background-preprocessing, the second connection uses the ports of --party plus this offset. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private int preprocessingPortOffset;
+    @Option(
+        names = {"--triple-watermarks"},
+        split = ",",
+        defaultValue = "1024,8192",
+        description = "With --background-preprocessing, the queue of triples is topped up to the second number once it holds no more than the first. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private int[] tripleWatermarks;
+    @Option(
+        names = {"--exp-pipe-watermarks"},
+        split = ",",
+        defaultValue = "4,32",
+        description = "With --background-preprocessing, the queue of exponentiation pipes is topped up to the second number once it holds no more than the first. If omitted, the default value is ${DEFAULT-VALUE}."
+    )
+    private int[] expPipeWatermarks;
+    @Option(
+        names = {"--cost-report"},
+        description = "Writes the wall time, rounds, bytes, native protocols, preprocessed material and allocations of every phase of the fit to this file, as JSON."
+    )
+    private Path costReport;
+    @Option(
+        names = {"--metrics-port"},
+        description = "Serves the phase, iteration, rounds, bytes exchanged, preprocessing queue depth and estimated time remaining of the fit at http://localhost:<port>/metrics, in Prometheus format. No secret values are exposed."
+    )
+    private Integer metricsPort;
+    @Option(
+        names = {"--coalescing-network"},
+        defaultValue = "false",
+        description = "Connects to the other parties with a network that sends all messages of a round to a party in a single write. All parties need to pass this option."
+    )
+    private boolean coalescingNetwork;
+    @Option(
+        names = {"--latency"},
+        split = ",",
+        description = "Delays every message to another party by this one-way latency in milliseconds, to simulate a wide area network. Either one value for all parties, or <party>=<value> for a single party. All parties need the same settings."
+    )
+    private String[] latencies;
+    @Option(
+        names = {"--jitter"},
+        split = ",",
+        description = "Adds a random delay of up to this many milliseconds to every message to another party. Either one value for all parties, or <party>=<value> for a single party."
+    )
+    private String[] jitters;
+    @Option(
+        names = {"--bandwidth"},
+        split = ",",
+        description = "Limits the bandwidth to another party to this many megabits per second. Either one value for all parties, or <party>=<value> for a single party."
+    )
+    private String[] bandwidths;
+    @Option(
+        names = {"--dry-run"},
+        defaultValue = "false",
+        description = "Evaluates the fit for this party alone, without a network and with dummy preprocessed material, and reports the material, openings and rounds needed by every phase instead of the model"
+    )
+    private boolean dryRun;
 
     public static void main(String[] args) {
         CommandLine.call(new LogisticRegressionApp(), args);
@@ -142,28 +321,206 @@ public class LogisticRegressionApp implements Callable<Void> {
         setLogLevel();
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-        Input input = new Gson().fromJson(reader, Input.class);
-        Matrix<BigDecimal> m = map(matrix(input.predictors), BigDecimal::valueOf);
-        Vector<BigDecimal> v = vectorOf(input.outcomes);
+        DataSet data = inputFormat.getReader().read(reader);
 
-        LogisticRegression frescoApp = new LogisticRegression(myId, m, v, lambda, iterations, privacyBudget);
-        ApplicationRunner<List<BigDecimal>> runner = createRunner(myId, createPartyMap());
+        ForkJoinPool pool = new ForkJoinPool(threads);
 
-        List<BigDecimal> result = runner.run(frescoApp);
+        if (dryRun) {
+            DryRun engine = new DryRun(modBitLength, maxBitLength, maxBatchSize);
+            engine.run(createApplication(1, data, pool, null));
+            engine.print(System.out);
+            engine.shutdown();
+            pool.shutdown();
+            return null;
+        }
 
-        System.out.println(result);
-        runner.close();
+        requirePartyOptions();
+        resolveMascotBatchSize(data, pool);
+        HashMap<Integer, Party> partyMap = createPartyMap();
+        Network network = createNetwork(partyMap);
+        ApplicationRunner<List<List<BigDecimal>>> runner = createRunner(myId, partyMap, network);
+        printResult(fit(runner, data, pool, true));
+        if (costReport != null) {
+            runner.getTracer().write(costReport);
+        }
+        pool.shutdown();
         return null;
     }
 
-    private ApplicationRunner<List<BigDecimal>> createRunner(int myId, HashMap<Integer, Party> partyMap) {
+    /**
+     * Fits the model for all parties at once, each in a thread of its own,
+     * connected by an in-memory network.
+     */
+    void runInProcess(List<Path> dataFiles) throws IOException {
+        setLogLevel();
+        if (backgroundPreprocessing) {
+            throw new IllegalArgumentException("Background preprocessing needs a second network, which is not available in process");
+        }
+        if (costReport != null || metricsPort != null) {
+            throw new IllegalArgumentException("Cost reports and metrics follow a single party, and are not available in process");
+        }
+        List<DataSet> data = new ArrayList<>();
+        for (Path file : dataFiles) {
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                data.add(inputFormat.getReader().read(reader));
+            }
+        }
+        HashMap<Integer, Party> partyMap = new HashMap<>();
+        for (int party = 1; party <= data.size(); party++) {
+            partyMap.put(party, new Party(party, "localhost", 0));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        resolveMascotBatchSize(data.get(0), pool);
+        List<List<List<BigDecimal>>> results = InProcessRunner.run(data.size(),
+            (id, network) -> fit(createRunner(id, partyMap, network), data.get(id - 1), pool, false));
+        printResult(results.get(0));
+        pool.shutdown();
+    }
+
+    /**
+     * @param recordPhases whether to emit flight recorder events and metrics for the phases of the fit, which can
+     *                     only be told apart when a single party runs in this process
+     */
+    private List<List<BigDecimal>> fit(ApplicationRunner<List<List<BigDecimal>>> runner, DataSet data, ForkJoinPool pool,
+                                       boolean recordPhases) throws IOException {
+        CheckpointStore checkpoints = runner.getCheckpoints();
+        if (checkpoints != null && !resume) {
+            checkpoints.clear();
+        }
+        LogisticRegression application = createApplication(runner.getMyId(), data, pool, checkpoints);
+        PhaseTracer tracer = runner.getTracer();
+        FlightRecorderPhases recorder = recordPhases && FlightRecorderPhases.isRecording()
+            ? new FlightRecorderPhases()
+            : null;
+        List<PhaseListener> listeners = new ArrayList<>();
+        if (tracer != null) {
+            tracer.start();
+            listeners.add(tracer);
+        }
+        if (recorder != null) {
+            recorder.phaseStarted("start");
+            listeners.add(recorder);
+        }
+        ProgressMetrics progress = null;
+        MetricsServer metricsServer = null;
+        if (recordPhases && metricsPort != null) {
+            progress = runner.createProgressMetrics(lambdas != null ? lambdas.size() : 1, iterations);
+            metricsServer = new MetricsServer(metricsPort, progress);
+            listeners.add(progress);
+        }
+        List<List<BigDecimal>> result;
+        if (listeners.isEmpty()) {
+            result = runner.run(application);
+        } else {
+            Phases.setListener(PhaseListener.all(listeners));
+            try {
+                result = runner.run(application);
+            } finally {
+                Phases.setListener(null);
+                if (tracer != null) {
+                    tracer.finish();
+                }
+                if (recorder != null) {
+                    recorder.finish();
+                }
+                if (progress != null) {
+                    progress.finish();
+                    metricsServer.close();
+                }
+            }
+        }
+        runner.close();
+        return result;
+    }
+
+    /**
+     * With --mascot-batch-size auto, dry runs the fit on the given data and
+     * uses the suggested batch size, when Mascot is used at all. The parties have to agree on the batch
+     * size, so they need data of the same shape, as the dry run assumes.
+     */
+    private void resolveMascotBatchSize(DataSet data, ForkJoinPool pool) {
+        boolean mascot = !dummyArithmetic && !dummyDataSupplier && preprocessedDirectory == null;
+        if (mascotBatchSize != DryRun.AUTO_MASCOT_BATCH_SIZE || !mascot) {
+            return;
+        }
+        DryRun engine = new DryRun(modBitLength, maxBitLength, maxBatchSize);
+        try {
+            engine.run(createApplication(1, data, pool, null));
+        } finally {
+            engine.shutdown();
+        }
+        mascotBatchSize = engine.suggestedMascotBatchSize();
+        LoggerFactory.getLogger(LogisticRegressionApp.class).info("Using a Mascot batch size of " + mascotBatchSize);
+    }
+
+    private LogisticRegression createApplication(int myId, DataSet data, ForkJoinPool pool, CheckpointStore checkpoints) {
+        LocalGradient localGradient = referenceGradient
+            ? LocalGradient.reference(data)
+            : LocalGradient.of(data, pool);
+        LocalHessian localHessian = secureHessian ? null : new LocalHessian(data, pool);
+        List<Double> regularization = lambdas != null ? lambdas : Collections.singletonList(lambda);
+        return new LogisticRegression(myId, data, localGradient, localHessian, regularization, iterations, tolerance, privacyBudget, choleskyBlockSize, solver, checkpoints, resume);
+    }
+
+    private void printResult(List<List<BigDecimal>> result) {
+        if (lambdas == null) {
+            System.out.println(result.get(0));
+        } else {
+            for (int i = 0; i < lambdas.size(); i++) {
+                System.out.println("lambda " + lambdas.get(i) + ": " + result.get(i));
+            }
+        }
+    }
+
+    private ApplicationRunner<List<List<BigDecimal>>> createRunner(int myId, Map<Integer, Party> partyMap, Network network) throws IOException {
+        network = new NetworkShaping(latencies, jitters, bandwidths).apply(myId, network);
         if (dummyArithmetic) {
-            return new DummyRunner<>(myId, partyMap, modBitLength, maxBitLength);
+            return new DummyRunner<>(myId, partyMap, network, modBitLength, maxBitLength, strategy, maxBatchSize, checkpointDirectory, isCounting());
         } else {
-            return new SpdzRunner<>(myId, partyMap, dummyDataSupplier, modBitLength, maxBitLength);
+            return new SpdzRunner<>(myId, partyMap, network, dummyDataSupplier, modBitLength, maxBitLength, strategy, maxBatchSize, mascotBatchSize, expPipeBatchSize, backgroundPreprocessing(), checkpointDirectory, resume, preprocessedDirectory, isCounting());
         }
     }
 
+    private Network createNetwork(Map<Integer, Party> partyMap) throws IOException {
+        return coalescingNetwork
+            ? new CoalescingSocketNetwork(myId, partyMap)
+            : new SocketNetwork(new NetworkConfigurationImpl(myId, partyMap));
+    }
+
+    private boolean isCounting() {
+        return costReport != null || metricsPort != null;
+    }
+
+    private void requirePartyOptions() {
+        if (myId == null || parties == null) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Missing required options '--myId' and '--party'");
+        }
+    }
+
+    private BackgroundPreprocessing backgroundPreprocessing() {
+        return backgroundPreprocessing
+            ? new BackgroundPreprocessing(preprocessingPortOffset, tripleWatermarks, expPipeWatermarks)
+            : null;
+    }
+
+    /**
+     * Runs Mascot with the network settings of this party and stores the
+     * generated material, without fitting a model.
+     */
+    void preprocess(Preprocessor preprocessor) throws IOException {
+        setLogLevel();
+        requirePartyOptions();
+        if (mascotBatchSize == DryRun.AUTO_MASCOT_BATCH_SIZE) {
+            throw new IllegalArgumentException("An automatic Mascot batch size needs the data of a fit, which the preprocess command does not read");
+        }
+        HashMap<Integer, Party> partyMap = createPartyMap();
+        Network network = createNetwork(partyMap);
+        SpdzRunner<Void> runner = new SpdzRunner<>(myId, partyMap, network, false, modBitLength, maxBitLength, strategy, maxBatchSize, mascotBatchSize, expPipeBatchSize, null, null, false, null, false);
+        preprocessor.generate(runner.getDataSupplier(), myId, partyMap.size());
+        runner.close();
+    }
+
     private void setLogLevel() {
         if (traceLogging) {
             Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
@@ -174,11 +531,6 @@ public class LogisticRegressionApp implements Callable<Void> {
         }
     }
 
-    private class Input {
-        Double[][] predictors;
-        double[] outcomes;
-    }
-
     private HashMap<Integer, Party> createPartyMap() {
         HashMap<Integer, Party> partyMap = new HashMap<>();
         for (int p = 0; p < parties.length/3; ++p) {
@@ -192,61 +544,192 @@ public class LogisticRegressionApp implements Callable<Void> {
 }
 
 abstract class ApplicationRunner <Output> {
+    int myId;
     Network network;
     BigInteger modulus;
-
-    ApplicationRunner(int myId, Map<Integer, Party> partyMap, int modBitLength) {
-        network = new SocketNetwork(new NetworkConfigurationImpl(myId, partyMap));
-        network = new NetworkLoggingDecorator(network);
+    CheckpointStore checkpoints;
+    WaitTimingNetwork waitTimingNetwork;
+    CountingNetwork countingNetwork;
+    CountingStrategy<?> countingStrategy;
+    PhaseTracer tracer;
+
+    /**
+     * @param network connects this party to the others, and is closed together with the runner
+     * @param trace   whether to count the costs of the computation, for a {@link PhaseTracer}
+     */
+    ApplicationRunner(int myId, Network network, int modBitLength, boolean trace) {
+        this.myId = myId;
+        if (FlightRecorderStrategy.isAvailable()) {
+            waitTimingNetwork = new WaitTimingNetwork(network, FlightRecorderStrategy::isRecording);
+            network = waitTimingNetwork;
+        }
+        if (trace) {
+            countingNetwork = new CountingNetwork(network);
+            network = countingNetwork;
+        }
+        this.network = new NetworkLoggingDecorator(network);
         modulus = ModulusFinder.findSuitableModulus(modBitLength);
     }
 
+    /**
+     * While tracing, the batches and rounds of the chosen strategy are counted.
+     * Every batch is recorded by the flight recorder, when it is recording.
+     * Without a flight recorder, the strategy is left as it is.
+     *
+     * @param openingType the native protocol that opens values, to count openings while tracing, or null
+     */
+    <ResourcePoolT extends ResourcePool> BatchEvaluationStrategy<ResourcePoolT> createStrategy(
+        Strategy evaluationStrategy, CountingDataSupplier supplier, Class<?> openingType) {
+        BatchEvaluationStrategy<ResourcePoolT> strategy = evaluationStrategy.create();
+        if (countingNetwork != null) {
+            CountingStrategy<ResourcePoolT> counting = new CountingStrategy<>(strategy);
+            tracer = new PhaseTracer(countingNetwork, counting, supplier, openingType);
+            countingStrategy = counting;
+            strategy = counting;
+        }
+        return waitTimingNetwork == null ? strategy : new FlightRecorderStrategy<>(strategy, waitTimingNetwork);
+    }
+
+    /**
+     * @return the tracer of this party, or null when tracing is disabled
+     */
+    PhaseTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Only available while tracing.
+     */
+    ProgressMetrics createProgressMetrics(int fits, int iterations) {
+        return new ProgressMetrics(fits, iterations, countingNetwork, countingStrategy, null);
+    }
+
+    int getMyId() {
+        return myId;
+    }
+
     abstract Output run(Application<Output, ProtocolBuilderNumeric> application);
 
+    /**
+     * @return the checkpoints of this party, or null when checkpointing is disabled
+     */
+    CheckpointStore getCheckpoints() {
+        return checkpoints;
+    }
+
+    static CheckpointStore openCheckpoints(Path directory, int myId, ShareSerializer serializer) throws IOException {
+        return directory == null ? null : new CheckpointStore(directory, myId, serializer);
+    }
+
     void close() throws IOException {
         ((Closeable)network).close();
+        if (checkpoints != null) {
+            checkpoints.close();
+        }
     }
 }
 
 class SpdzRunner <Output> extends ApplicationRunner<Output> {
 
     static final int PRG_SEED_LENGTH = 256;
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(SpdzRunner.class);
 
     private SecureComputationEngineImpl<SpdzResourcePool, ProtocolBuilderNumeric> sce;
     private SpdzResourcePoolImpl resourcePool;
     private SpdzProtocolSuite protocolSuite;
-
-    SpdzRunner(int myId, Map<Integer, Party> partyMap, Boolean dummyDataSupplier, int modBitLength, int maxBitLength) {
-        super(myId, partyMap, modBitLength);
+    private FileBackedDataSupplier preprocessedSupplier;
+    private BackgroundDataSupplier backgroundSupplier;
+    private Network preprocessingNetwork;
+
+    /**
+     * @param background            how to produce Mascot material in the background, or null to produce it
+     *                              when it is needed
+     * @param resume                whether the fit continues from the checkpoints, which then have to match the
+     *                              MAC key of the preprocessed material, and may take over material that a
+     *                              crashed run left in use
+     * @param preprocessedDirectory where material generated ahead of time is read from, or null to generate
+     *                              material while computing
+     */
+    SpdzRunner(int myId, Map<Integer, Party> partyMap, Network network, Boolean dummyDataSupplier, int modBitLength, int maxBitLength,
+               Strategy evaluationStrategy, int maxBatchSize, int mascotBatchSize, int expPipeBatchSize,
+               BackgroundPreprocessing background, Path checkpointDirectory, boolean resume, Path preprocessedDirectory,
+               boolean trace)
+        throws IOException {
+        super(myId, network, modBitLength, trace);
         int numberOfPlayers = partyMap.size();
 
         this.protocolSuite = new SpdzProtocolSuite(maxBitLength, 16);
-        BatchEvaluationStrategy<SpdzResourcePool> strategy = EvaluationStrategy.SEQUENTIAL.getStrategy();
-        strategy = new BatchEvaluationLoggingDecorator<>(strategy);
-        ProtocolEvaluator<SpdzResourcePool> evaluator = new BatchedProtocolEvaluator<>(strategy, protocolSuite);
-        evaluator = new EvaluatorLoggingDecorator<>(evaluator);
-        sce = new SecureComputationEngineImpl<>(protocolSuite, evaluator);
 
         SpdzOpenedValueStoreImpl store = new SpdzOpenedValueStoreImpl();
         final BigIntegerFieldDefinition definition = new BigIntegerFieldDefinition(modulus);
-        if (!dummyDataSupplier) {
+        checkpoints = openCheckpoints(checkpointDirectory, myId, new SpdzShareSerializer(definition));
+        SpdzDataSupplier supplier;
+        if (preprocessedDirectory != null) {
+            // A crashed fit left its material in use; resuming it continues after whatever the crash used
+            preprocessedSupplier = FileBackedDataSupplier.open(preprocessedDirectory, myId, numberOfPlayers, definition, resume);
+            preprocessedSupplier.synchronize(network);
+            if (checkpoints != null && resume) {
+                requireSameKey(definition, preprocessedSupplier.getSecretSharedKey());
+            } else if (checkpoints != null) {
+                checkpoints.saveKey(definition, preprocessedSupplier.getSecretSharedKey());
+            }
+            supplier = preprocessedSupplier;
+        } else if (!dummyDataSupplier) {
             Drbg drbg = Random.getDrbg(myId);
             List<Integer> partyIds = new ArrayList<>(partyMap.keySet());
             Map<Integer, RotList> seedOts = getSeedOts(myId, partyIds, PRG_SEED_LENGTH, drbg, network);
-            FieldElement ssk = SpdzMascotDataSupplier.createRandomSsk(definition, PRG_SEED_LENGTH);
+            // Checkpointed shares carry MACs under this key, so it has to survive a restart
+            FieldElement ssk = checkpoints != null
+                ? checkpoints.loadOrCreateKey(definition, () -> SpdzMascotDataSupplier.createRandomSsk(definition, PRG_SEED_LENGTH))
+                : SpdzMascotDataSupplier.createRandomSsk(definition, PRG_SEED_LENGTH);
+            // The background producer must not share the network with the computation
+            Network mascotNetwork = network;
+            if (background != null) {
+                preprocessingNetwork = new SocketNetwork(new NetworkConfigurationImpl(myId, background.channelPartyMap(partyMap)));
+                mascotNetwork = preprocessingNetwork;
+            }
+            Network pipeNetwork = mascotNetwork;
             PreprocessedValuesSupplier preprocessedValuesSupplier
-                = new PreprocessedValuesSupplier(myId, numberOfPlayers, network, protocolSuite, modBitLength, definition, seedOts, ssk, maxBitLength);
-            SpdzDataSupplier supplier = SpdzMascotDataSupplier.createSimpleSupplier(
+                = new PreprocessedValuesSupplier(myId, numberOfPlayers, pipeNetwork, protocolSuite, modBitLength, definition, seedOts, ssk, maxBitLength, mascotBatchSize, expPipeBatchSize);
+            supplier = SpdzMascotDataSupplier.createSimpleSupplier(
                 myId, numberOfPlayers,
-                () -> network,
+                () -> pipeNetwork,
                 modBitLength, definition,
                 preprocessedValuesSupplier::provide,
-                seedOts, drbg, ssk);
-            resourcePool = new SpdzResourcePoolImpl(myId, numberOfPlayers, store, supplier, AesCtrDrbg::new);
+                seedOts, drbg, ssk, mascotBatchSize);
+            if (background != null) {
+                backgroundSupplier = background.createSupplier(supplier);
+                supplier = backgroundSupplier;
+            }
         } else {
-            SpdzDataSupplier supplier = new SpdzDummyDataSupplier(myId, partyMap.size(), definition,
+            supplier = new SpdzDummyDataSupplier(myId, partyMap.size(), definition,
                 new BigInteger(modulus.bitLength(), new java.util.Random(0)).mod(modulus));
-            resourcePool = new SpdzResourcePoolImpl(myId, partyMap.size(), store, supplier, AesCtrDrbg::new);
+        }
+        CountingDataSupplier countingSupplier = null;
+        if (trace) {
+            countingSupplier = new CountingDataSupplier(supplier);
+            supplier = countingSupplier;
+        }
+        resourcePool = new SpdzResourcePoolImpl(myId, numberOfPlayers, store, supplier, AesCtrDrbg::new);
+
+        BatchEvaluationStrategy<SpdzResourcePool> strategy = createStrategy(evaluationStrategy, countingSupplier, SpdzOutputToAllProtocol.class);
+        strategy = new BatchEvaluationLoggingDecorator<>(strategy);
+        ProtocolEvaluator<SpdzResourcePool> evaluator = new BatchedProtocolEvaluator<>(strategy, protocolSuite, maxBatchSize);
+        evaluator = new EvaluatorLoggingDecorator<>(evaluator);
+        sce = new SecureComputationEngineImpl<>(protocolSuite, evaluator);
+    }
+
+    /**
+     * The MAC key share of preprocessed material comes with the material, so
+     * checkpoints can only be resumed with material generated under the same
+     * key; regenerating the material in between would invalidate their MACs.
+     */
+    private void requireSameKey(BigIntegerFieldDefinition definition, FieldElement key) throws IOException {
+        FieldElement checkpointKey = checkpoints.loadOrCreateKey(definition, () -> key);
+        if (!Arrays.equals(definition.serialize(checkpointKey), definition.serialize(key))) {
+            throw new IllegalArgumentException(
+                "The preprocessed material uses a different MAC key than the checkpoints; "
+                    + "start the fit again without --resume, or use the material the checkpoints were made with");
         }
     }
 
@@ -278,10 +761,27 @@ class SpdzRunner <Output> extends ApplicationRunner<Output> {
         return sce.runApplication(application, resourcePool, network, timeout);
     }
 
+    SpdzDataSupplier getDataSupplier() {
+        return resourcePool.getDataSupplier();
+    }
+
+    @Override
+    ProgressMetrics createProgressMetrics(int fits, int iterations) {
+        return new ProgressMetrics(fits, iterations, countingNetwork, countingStrategy, backgroundSupplier);
+    }
+
     @Override
     public void close() throws IOException {
         super.close();
         sce.shutdownSCE();
+        if (preprocessedSupplier != null) {
+            preprocessedSupplier.close();
+        }
+        if (backgroundSupplier != null) {
+            logger.debug("Background preprocessing: " + backgroundSupplier.getLoggedValues());
+            backgroundSupplier.close();
+            ((Closeable) preprocessingNetwork).close();
+        }
     }
 }
 
@@ -290,16 +790,20 @@ class DummyRunner <Output> extends ApplicationRunner<Output> {
     private DummyArithmeticResourcePoolImpl resourcePool;
     private SecureComputationEngine<DummyArithmeticResourcePool, ProtocolBuilderNumeric> sce;
 
-    DummyRunner(int myId, Map<Integer, Party> partyMap, int modBitLength, int maxBitLength) {
-        super(myId, partyMap, modBitLength);
+    DummyRunner(int myId, Map<Integer, Party> partyMap, Network network, int modBitLength, int maxBitLength,
+                Strategy evaluationStrategy, int maxBatchSize, Path checkpointDirectory, boolean trace) throws IOException {
+        super(myId, network, modBitLength, trace);
 
         final BigIntegerFieldDefinition definition = new BigIntegerFieldDefinition(modulus);
         DummyArithmeticProtocolSuite protocolSuite = new DummyArithmeticProtocolSuite(definition, maxBitLength,16);
-        BatchEvaluationStrategy<DummyArithmeticResourcePool> strategy = EvaluationStrategy.SEQUENTIAL.getStrategy();
-        ProtocolEvaluator<DummyArithmeticResourcePool> evaluator = new BatchedProtocolEvaluator<>(strategy, protocolSuite);
+        BatchEvaluationStrategy<DummyArithmeticResourcePool> strategy = createStrategy(evaluationStrategy, null, null);
+        strategy = new BatchEvaluationLoggingDecorator<>(strategy);
+        ProtocolEvaluator<DummyArithmeticResourcePool> evaluator = new BatchedProtocolEvaluator<>(strategy, protocolSuite, maxBatchSize);
+        evaluator = new EvaluatorLoggingDecorator<>(evaluator);
         sce = new SecureComputationEngineImpl<>(protocolSuite, evaluator);
 
         resourcePool = new DummyArithmeticResourcePoolImpl(myId, partyMap.size(), definition);
+        checkpoints = openCheckpoints(checkpointDirectory, myId, new DummyShareSerializer(definition));
     }
 
     @Override
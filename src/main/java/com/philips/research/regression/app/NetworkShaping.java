@@ -0,0 +1,77 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.network.LinkShape;
+import com.philips.research.regression.network.ShapedNetwork;
+import dk.alexandra.fresco.framework.network.Network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for simulating slower links between the parties. Every setting
+ * is a list of values, each either for all other parties, such as "25", or
+ * for one party, such as "2=25". A value for one party overrides a value
+ * for all of them.
+ */
+class NetworkShaping {
+    private final String[] latencies;
+    private final String[] jitters;
+    private final String[] bandwidths;
+
+    /**
+     * @param latencies  one-way latencies in milliseconds
+     * @param jitters    maximum jitter in milliseconds
+     * @param bandwidths bandwidths in megabits per second
+     */
+    NetworkShaping(String[] latencies, String[] jitters, String[] bandwidths) {
+        this.latencies = latencies != null ? latencies : new String[0];
+        this.jitters = jitters != null ? jitters : new String[0];
+        this.bandwidths = bandwidths != null ? bandwidths : new String[0];
+    }
+
+    boolean isEnabled() {
+        return latencies.length > 0 || jitters.length > 0 || bandwidths.length > 0;
+    }
+
+    Network apply(int myId, Network network) {
+        if (!isEnabled()) {
+            return network;
+        }
+        Map<Integer, LinkShape> shapes = new HashMap<>();
+        for (int party = 1; party <= network.getNoOfParties(); party++) {
+            if (party != myId) {
+                shapes.put(party, shape(party));
+            }
+        }
+        return new ShapedNetwork(network, shapes, myId);
+    }
+
+    LinkShape shape(int party) {
+        long latency = millisToNanos(value(latencies, party));
+        long jitter = millisToNanos(value(jitters, party));
+        long bandwidth = (long) (value(bandwidths, party) * 1_000_000);
+        return new LinkShape(latency, jitter, bandwidth);
+    }
+
+    private static long millisToNanos(double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static double value(String[] values, int party) {
+        double forAll = 0;
+        for (String value : values) {
+            String[] parts = value.split("=", 2);
+            try {
+                if (parts.length == 1) {
+                    forAll = Double.parseDouble(parts[0].trim());
+                } else if (Integer.parseInt(parts[0].trim()) == party) {
+                    return Double.parseDouble(parts[1].trim());
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a number or <party>=<number>, got '" + value + "'", e);
+            }
+        }
+        return forAll;
+    }
+}
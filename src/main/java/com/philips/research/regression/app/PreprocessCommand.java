@@ -0,0 +1,54 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.preprocessing.Preprocessor;
+import picocli.CommandLine;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(
+    name = "preprocess",
+    description = "Generates SPDZ material with Mascot ahead of time, for use with --preprocessed. All parties must run it with the same amounts. The options of the party, such as --myId and --party, go before the subcommand.",
+    mixinStandardHelpOptions = true)
+class PreprocessCommand implements Callable<Void> {
+    @CommandLine.ParentCommand
+    private LogisticRegressionApp app;
+    @Option(
+        names = {"--output"},
+        required = true,
+        description = "Directory in which the material is stored; any material of this party that is already there is replaced.")
+    private Path output;
+    @Option(
+        names = {"--triples"},
+        defaultValue = "0",
+        description = "Number of multiplication triples. If omitted, the default value is ${DEFAULT-VALUE}.")
+    private int triples;
+    @Option(
+        names = {"--input-masks"},
+        defaultValue = "0",
+        description = "Number of input masks for every party. If omitted, the default value is ${DEFAULT-VALUE}.")
+    private int inputMasks;
+    @Option(
+        names = {"--bits"},
+        defaultValue = "0",
+        description = "Number of random bits. If omitted, the default value is ${DEFAULT-VALUE}.")
+    private int bits;
+    @Option(
+        names = {"--random-elements"},
+        defaultValue = "0",
+        description = "Number of random field elements. If omitted, the default value is ${DEFAULT-VALUE}.")
+    private int randomElements;
+    @Option(
+        names = {"--exp-pipes"},
+        defaultValue = "0",
+        description = "Number of exponentiation pipes. If omitted, the default value is ${DEFAULT-VALUE}.")
+    private int expPipes;
+
+    @Override
+    public Void call() throws IOException {
+        app.preprocess(new Preprocessor(output, triples, inputMasks, bits, randomElements, expPipes));
+        return null;
+    }
+}
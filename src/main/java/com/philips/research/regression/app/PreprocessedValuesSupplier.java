@@ -6,12 +6,10 @@ import dk.alexandra.fresco.framework.builder.numeric.DefaultPreprocessedValues;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
 import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
-import dk.alexandra.fresco.framework.network.CloseableNetwork;
 import dk.alexandra.fresco.framework.network.Network;
 import dk.alexandra.fresco.framework.sce.evaluator.BatchedProtocolEvaluator;
 import dk.alexandra.fresco.framework.sce.evaluator.BatchedStrategy;
 import dk.alexandra.fresco.framework.util.AesCtrDrbg;
-import dk.alexandra.fresco.framework.util.Drbg;
 import dk.alexandra.fresco.framework.util.OpenedValueStoreImpl;
 import dk.alexandra.fresco.framework.value.SInt;
 import dk.alexandra.fresco.suite.spdz.SpdzProtocolSuite;
@@ -21,64 +19,81 @@ import dk.alexandra.fresco.suite.spdz.datatypes.SpdzSInt;
 import dk.alexandra.fresco.suite.spdz.storage.SpdzMascotDataSupplier;
 import dk.alexandra.fresco.tools.ot.otextension.RotList;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static com.philips.research.regression.util.ListConversions.unwrap;
 
+/**
+ * Generates exponentiation pipes for SPDZ with Mascot triples. Pipes are
+ * generated in batches that are evaluated together, and kept in a pool until
+ * they are needed. The resource pool and evaluator are shared by all
+ * batches.
+ */
 class PreprocessedValuesSupplier {
+    static final int DEFAULT_BATCH_SIZE = 16;
+
     private final Network pipeNetwork;
-    private final SpdzMascotDataSupplier tripleSupplier;
-    private final int maxBitLength;
-    private final SpdzProtocolSuite protocolSuite;
-    private final int myId;
-    private final int numberOfPlayers;
-    private final Drbg drbg;
+    private final int batchSize;
+    private final SpdzResourcePoolImpl resourcePool;
+    private final BuilderFactoryNumeric builderFactory;
+    private final BatchedProtocolEvaluator<SpdzResourcePool> evaluator;
+    private final Map<Integer, Deque<SpdzSInt[]>> pool = new HashMap<>();
 
-    PreprocessedValuesSupplier(int myId, int numberOfPlayers, Network network, SpdzProtocolSuite protocolSuite, int modBitLength, FieldDefinition definition, Map<Integer, RotList> seedOts, FieldElement ssk, int maxBitLength) {
+    /**
+     * @param batchSize the number of pipes that are generated at once
+     */
+    PreprocessedValuesSupplier(int myId, int numberOfPlayers, Network network, SpdzProtocolSuite protocolSuite, int modBitLength, FieldDefinition definition, Map<Integer, RotList> seedOts, FieldElement ssk, int maxBitLength, int mascotBatchSize, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Expected a positive batch size, got " + batchSize);
+        }
         this.pipeNetwork = network;
-        this.tripleSupplier = SpdzMascotDataSupplier.createSimpleSupplier(
+        this.batchSize = batchSize;
+        SpdzMascotDataSupplier tripleSupplier = SpdzMascotDataSupplier.createSimpleSupplier(
             myId,
             numberOfPlayers,
             () -> pipeNetwork,
             modBitLength,
             definition,
             null,
-            seedOts, Random.getDrbg(myId), ssk);
-        this.maxBitLength = maxBitLength;
-        this.protocolSuite = protocolSuite;
-        this.myId = myId;
-        this.numberOfPlayers = numberOfPlayers;
-        this.drbg = Random.getDrbg(myId);
-    }
-
-    SpdzSInt[] provide(Integer pipeLength) {
-        SpdzResourcePoolImpl resourcePool = createResourcePool();
-        BuilderFactoryNumeric builderFactory = protocolSuite.init(resourcePool);
-        ProtocolBuilderNumeric sequential = builderFactory.createSequential();
-        DefaultPreprocessedValues preprocessedValues = new DefaultPreprocessedValues(sequential);
-        DRes<List<DRes<SInt>>> exponentiationSeries =
-            preprocessedValues.getExponentiationPipe(pipeLength);
-        evaluate(sequential, resourcePool, pipeNetwork);
-        List<SInt> result = unwrap(exponentiationSeries);
-        return result.stream().map(i -> (SpdzSInt) i).toArray(SpdzSInt[]::new);
-    }
-
-    private SpdzResourcePoolImpl createResourcePool() {
-        return new SpdzResourcePoolImpl(
+            seedOts, Random.getDrbg(myId), ssk, mascotBatchSize);
+        this.resourcePool = new SpdzResourcePoolImpl(
             myId,
             numberOfPlayers,
             new OpenedValueStoreImpl<>(),
             tripleSupplier,
             AesCtrDrbg::new);
+        this.builderFactory = protocolSuite.init(resourcePool);
+        this.evaluator = new BatchedProtocolEvaluator<>(new BatchedStrategy<>(), new SpdzProtocolSuite(maxBitLength));
     }
 
-    private void evaluate(ProtocolBuilderNumeric spdzBuilder, SpdzResourcePool tripleResourcePool,
-                          Network network) {
-        BatchedStrategy<SpdzResourcePool> batchedStrategy = new BatchedStrategy<>();
-        SpdzProtocolSuite spdzProtocolSuite = new SpdzProtocolSuite(maxBitLength);
-        BatchedProtocolEvaluator<SpdzResourcePool> batchedProtocolEvaluator =
-            new BatchedProtocolEvaluator<>(batchedStrategy, spdzProtocolSuite);
-        batchedProtocolEvaluator.eval(spdzBuilder.build(), tripleResourcePool, network);
+    SpdzSInt[] provide(Integer pipeLength) {
+        Deque<SpdzSInt[]> pipes = pool.computeIfAbsent(pipeLength, length -> new ArrayDeque<>());
+        if (pipes.isEmpty()) {
+            pipes.addAll(generate(pipeLength));
+        }
+        return pipes.poll();
+    }
+
+    private List<SpdzSInt[]> generate(int pipeLength) {
+        ProtocolBuilderNumeric sequential = builderFactory.createSequential();
+        DRes<List<DRes<List<DRes<SInt>>>>> batch = sequential.par(par -> {
+            DefaultPreprocessedValues preprocessedValues = new DefaultPreprocessedValues(par);
+            List<DRes<List<DRes<SInt>>>> series = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                series.add(preprocessedValues.getExponentiationPipe(pipeLength));
+            }
+            return () -> series;
+        });
+        evaluator.eval(sequential.build(), resourcePool, pipeNetwork);
+        List<SpdzSInt[]> pipes = new ArrayList<>(batchSize);
+        for (DRes<List<DRes<SInt>>> pipe : batch.out()) {
+            pipes.add(unwrap(pipe).stream().map(i -> (SpdzSInt) i).toArray(SpdzSInt[]::new));
+        }
+        return pipes;
     }
 }
@@ -0,0 +1,73 @@
+package com.philips.research.regression.app;
+
+import picocli.CommandLine;
+
+import java.util.Locale;
+
+/**
+ * How each iteration solves the system of equations given by the Cholesky
+ * factor of the Hessian.
+ */
+enum Solver {
+    /**
+     * Picks the inverse when it saves rounds.
+     */
+    AUTO,
+    /**
+     * Forward and back substitution in every iteration; the depth of each
+     * substitution grows linearly with the number of columns.
+     */
+    SUBSTITUTION,
+    /**
+     * Inverts the factor once, after which every iteration only needs two
+     * matrix-vector products of constant depth.
+     */
+    INVERSE;
+
+    /**
+     * Only rounds are weighed. Counted in multiplications, inverting never
+     * pays back: it takes roughly width^3 / 3 of them, and the two
+     * matrix-vector products of an iteration take as many as the
+     * substitutions they replace.
+     * <p>
+     * Each substitution takes a round of multiplication per column, so the
+     * substitutions of an iteration take about 2 * width rounds, where the
+     * products take 2. Each level of the recursive inversion takes two
+     * rounds of block products, over log2(width) levels. The inverse is
+     * used when the rounds saved by the iterations exceed those of the
+     * inversion.
+     */
+    boolean usesInverse(int width, int iterations) {
+        switch (this) {
+            case SUBSTITUTION:
+                return false;
+            case INVERSE:
+                return true;
+            default:
+                return (long) iterations * (substitutionRounds(width) - PRODUCT_ROUNDS) > inversionRounds(width);
+        }
+    }
+
+    private static final int PRODUCT_ROUNDS = 2;
+
+    static int substitutionRounds(int width) {
+        return 2 * width;
+    }
+
+    static int inversionRounds(int width) {
+        int levels = 32 - Integer.numberOfLeadingZeros(width - 1);
+        return PRODUCT_ROUNDS * levels;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static class Converter implements CommandLine.ITypeConverter<Solver> {
+        @Override
+        public Solver convert(String value) {
+            return Solver.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
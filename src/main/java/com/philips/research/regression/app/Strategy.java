@@ -0,0 +1,35 @@
+package com.philips.research.regression.app;
+
+import dk.alexandra.fresco.framework.sce.evaluator.BatchEvaluationStrategy;
+import dk.alexandra.fresco.framework.sce.evaluator.EvaluationStrategy;
+import dk.alexandra.fresco.framework.sce.resources.ResourcePool;
+import picocli.CommandLine;
+
+import java.util.Locale;
+
+enum Strategy {
+    SEQUENTIAL(EvaluationStrategy.SEQUENTIAL),
+    BATCHED(EvaluationStrategy.SEQUENTIAL_BATCHED);
+
+    private final EvaluationStrategy evaluationStrategy;
+
+    Strategy(EvaluationStrategy evaluationStrategy) {
+        this.evaluationStrategy = evaluationStrategy;
+    }
+
+    <ResourcePoolT extends ResourcePool> BatchEvaluationStrategy<ResourcePoolT> create() {
+        return evaluationStrategy.getStrategy();
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static class Converter implements CommandLine.ITypeConverter<Strategy> {
+        @Override
+        public Strategy convert(String value) {
+            return Strategy.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.philips.research.regression.checkpoint;
+
+import com.philips.research.regression.primitives.Factorization;
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * The state of a fit after the Cholesky decomposition of the Hessian, or
+ * after an iteration: this party's shares of the factorization and of beta,
+ * together with the public values that are needed to continue.
+ */
+public class Checkpoint {
+    private final int iteration;
+    private final boolean finished;
+    private final int numberOfInputs;
+    private final Factorization factorization;
+    private final Vector<DRes<SReal>> beta;
+    private final Vector<BigDecimal> openedBeta;
+
+    /**
+     * @param iteration  the number of iterations that have been performed
+     * @param finished   whether the fit stopped early because it converged
+     * @param openedBeta the opened beta of the last iteration, or null when no iteration was performed
+     */
+    public Checkpoint(int iteration, boolean finished, int numberOfInputs, Factorization factorization,
+                      Vector<DRes<SReal>> beta, Vector<BigDecimal> openedBeta) {
+        this.iteration = iteration;
+        this.finished = finished;
+        this.numberOfInputs = numberOfInputs;
+        this.factorization = factorization;
+        this.beta = beta;
+        this.openedBeta = openedBeta;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int getNumberOfInputs() {
+        return numberOfInputs;
+    }
+
+    public Factorization getFactorization() {
+        return factorization;
+    }
+
+    public Vector<DRes<SReal>> getBeta() {
+        return beta;
+    }
+
+    public Vector<BigDecimal> getOpenedBeta() {
+        return openedBeta;
+    }
+
+    void write(DataOutput output, ShareSerializer serializer) throws IOException {
+        output.writeInt(iteration);
+        output.writeBoolean(finished);
+        output.writeInt(numberOfInputs);
+        writeMatrix(output, serializer, factorization.getL());
+        writeOptionalList(output, serializer, factorization.getDiagonalReciprocals());
+        output.writeBoolean(factorization.getLInverse() != null);
+        if (factorization.getLInverse() != null) {
+            writeMatrix(output, serializer, factorization.getLInverse());
+        }
+        writeList(output, serializer, beta);
+        output.writeBoolean(openedBeta != null);
+        if (openedBeta != null) {
+            output.writeInt(openedBeta.size());
+            for (BigDecimal value : openedBeta) {
+                output.writeUTF(value.toString());
+            }
+        }
+    }
+
+    static Checkpoint read(DataInput input, ShareSerializer serializer) throws IOException {
+        int iteration = input.readInt();
+        boolean finished = input.readBoolean();
+        int numberOfInputs = input.readInt();
+        Matrix<DRes<SReal>> L = readMatrix(input, serializer);
+        List<DRes<SReal>> reciprocals = input.readBoolean() ? readList(input, serializer) : null;
+        Factorization factorization = new Factorization(L, reciprocals);
+        if (input.readBoolean()) {
+            factorization = factorization.withInverse(readMatrix(input, serializer));
+        }
+        Vector<DRes<SReal>> beta = new Vector<>(readList(input, serializer));
+        Vector<BigDecimal> openedBeta = null;
+        if (input.readBoolean()) {
+            int size = input.readInt();
+            openedBeta = new Vector<>(size);
+            for (int i = 0; i < size; i++) {
+                openedBeta.add(new BigDecimal(input.readUTF()));
+            }
+        }
+        return new Checkpoint(iteration, finished, numberOfInputs, factorization, beta, openedBeta);
+    }
+
+    private static void writeMatrix(DataOutput output, ShareSerializer serializer, Matrix<DRes<SReal>> matrix)
+        throws IOException {
+        output.writeInt(matrix.getHeight());
+        output.writeInt(matrix.getWidth());
+        for (ArrayList<DRes<SReal>> row : matrix.getRows()) {
+            for (DRes<SReal> element : row) {
+                serializer.write(output, element);
+            }
+        }
+    }
+
+    private static Matrix<DRes<SReal>> readMatrix(DataInput input, ShareSerializer serializer) throws IOException {
+        int height = input.readInt();
+        int width = input.readInt();
+        ArrayList<ArrayList<DRes<SReal>>> rows = new ArrayList<>(height);
+        for (int row = 0; row < height; row++) {
+            ArrayList<DRes<SReal>> elements = new ArrayList<>(width);
+            for (int column = 0; column < width; column++) {
+                elements.add(serializer.read(input));
+            }
+            rows.add(elements);
+        }
+        return new Matrix<>(height, width, rows);
+    }
+
+    private static void writeOptionalList(DataOutput output, ShareSerializer serializer, List<DRes<SReal>> list)
+        throws IOException {
+        output.writeBoolean(list != null);
+        if (list != null) {
+            writeList(output, serializer, list);
+        }
+    }
+
+    private static void writeList(DataOutput output, ShareSerializer serializer, List<DRes<SReal>> list)
+        throws IOException {
+        output.writeInt(list.size());
+        for (DRes<SReal> element : list) {
+            serializer.write(output, element);
+        }
+    }
+
+    private static List<DRes<SReal>> readList(DataInput input, ShareSerializer serializer) throws IOException {
+        int size = input.readInt();
+        List<DRes<SReal>> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(serializer.read(input));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,144 @@
+package com.philips.research.regression.checkpoint;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Keeps the checkpoints of a single party in a directory, one file per
+ * iteration. Checkpoints are written by a background thread, so that saving
+ * them does not hold up the secure computation. Every checkpoint is first
+ * written to a temporary file and then moved into place, so a party that
+ * dies while writing never leaves a partial checkpoint behind.
+ */
+public class CheckpointStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointStore.class);
+    private static final Pattern CHECKPOINT_FILE = Pattern.compile("iteration-(\\d+)\\.checkpoint");
+    private static final String KEY_FILE = "mac-key";
+
+    private final Path directory;
+    private final ShareSerializer serializer;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CheckpointStore(Path directory, int myId, ShareSerializer serializer) throws IOException {
+        this.directory = Files.createDirectories(directory.resolve("party-" + myId));
+        this.serializer = serializer;
+    }
+
+    /**
+     * Writes the checkpoint in the background. Failures are logged, but do not
+     * interrupt the computation.
+     */
+    public void save(Checkpoint checkpoint) {
+        writer.execute(() -> {
+            Path file = directory.resolve("iteration-" + checkpoint.getIteration() + ".checkpoint");
+            try {
+                Path temporary = Files.createTempFile(directory, "iteration-", ".tmp");
+                try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    checkpoint.write(output, serializer);
+                }
+                Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+                logger.debug("Saved checkpoint " + file);
+            } catch (IOException | RuntimeException exception) {
+                logger.warn("Could not save checkpoint " + file, exception);
+            }
+        });
+    }
+
+    /**
+     * @return the highest iteration for which a checkpoint exists, or -1 when there are none
+     */
+    public int latestIteration() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(file -> CHECKPOINT_FILE.matcher(file.getFileName().toString()))
+                .filter(Matcher::matches)
+                .mapToInt(matcher -> Integer.parseInt(matcher.group(1)))
+                .max()
+                .orElse(-1);
+        }
+    }
+
+    /**
+     * Removes the checkpoints of an earlier fit, so that they cannot be mixed
+     * up with the checkpoints of a new one. The MAC key share is kept.
+     */
+    public void clear() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (CHECKPOINT_FILE.matcher(file.getFileName().toString()).matches()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    public Checkpoint load(int iteration) throws IOException {
+        Path file = directory.resolve("iteration-" + iteration + ".checkpoint");
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return Checkpoint.read(input, serializer);
+        }
+    }
+
+    /**
+     * Returns the MAC key share that was used when the checkpoints were
+     * written, so that the MACs of the checkpointed shares remain valid. When
+     * there is no such key yet, a new one is created and saved.
+     */
+    public FieldElement loadOrCreateKey(FieldDefinition definition, Supplier<FieldElement> keyFactory)
+        throws IOException {
+        Path file = directory.resolve(KEY_FILE);
+        if (Files.exists(file)) {
+            return definition.deserialize(Files.readAllBytes(file));
+        }
+        FieldElement key = keyFactory.get();
+        saveKey(definition, key);
+        return key;
+    }
+
+    /**
+     * Replaces the saved MAC key share, for a new fit whose key is not chosen
+     * by this store, such as that of preprocessed material.
+     */
+    public void saveKey(FieldDefinition definition, FieldElement key) throws IOException {
+        Path temporary = Files.createTempFile(directory, KEY_FILE, ".tmp");
+        Files.write(temporary, definition.serialize(key));
+        Files.move(temporary, directory.resolve(KEY_FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    /**
+     * Waits for the pending checkpoints to be written.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+                throw new IOException("Timed out while writing checkpoints");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing checkpoints");
+        }
+    }
+}
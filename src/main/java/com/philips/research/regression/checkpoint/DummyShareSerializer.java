@@ -0,0 +1,30 @@
+package com.philips.research.regression.checkpoint;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.suite.dummy.arithmetic.DummyArithmeticSInt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Serializes the values of dummy arithmetic, which are not secret shared at
+ * all.
+ */
+public class DummyShareSerializer extends ShareSerializer {
+
+    public DummyShareSerializer(FieldDefinition definition) {
+        super(definition);
+    }
+
+    @Override
+    void writeSInt(DataOutput output, SInt value) throws IOException {
+        writeElement(output, ((DummyArithmeticSInt) value).getValue());
+    }
+
+    @Override
+    SInt readSInt(DataInput input) throws IOException {
+        return new DummyArithmeticSInt(readElement(input));
+    }
+}
@@ -0,0 +1,49 @@
+package com.philips.research.regression.checkpoint;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads this party's share of a secret fixed point value. How a
+ * share looks depends on the protocol suite, so there is one subclass per
+ * suite.
+ */
+public abstract class ShareSerializer {
+    private final FieldDefinition definition;
+
+    ShareSerializer(FieldDefinition definition) {
+        this.definition = definition;
+    }
+
+    public void write(DataOutput output, DRes<SReal> value) throws IOException {
+        writeSInt(output, ((SFixed) value.out()).getSInt().out());
+    }
+
+    public DRes<SReal> read(DataInput input) throws IOException {
+        return new SFixed(readSInt(input));
+    }
+
+    abstract void writeSInt(DataOutput output, SInt value) throws IOException;
+
+    abstract SInt readSInt(DataInput input) throws IOException;
+
+    void writeElement(DataOutput output, FieldElement element) throws IOException {
+        byte[] bytes = definition.serialize(element);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    FieldElement readElement(DataInput input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return definition.deserialize(bytes);
+    }
+}
@@ -0,0 +1,33 @@
+package com.philips.research.regression.checkpoint;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzSInt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Serializes SPDZ shares, which consist of a share of the value and a share
+ * of its MAC. The MACs only remain valid when the same MAC key share is used
+ * after resuming, see {@link CheckpointStore#loadOrCreateKey}.
+ */
+public class SpdzShareSerializer extends ShareSerializer {
+
+    public SpdzShareSerializer(FieldDefinition definition) {
+        super(definition);
+    }
+
+    @Override
+    void writeSInt(DataOutput output, SInt value) throws IOException {
+        SpdzSInt share = (SpdzSInt) value;
+        writeElement(output, share.getShare());
+        writeElement(output, share.getMac());
+    }
+
+    @Override
+    SInt readSInt(DataInput input) throws IOException {
+        return new SpdzSInt(readElement(input), readElement(input));
+    }
+}
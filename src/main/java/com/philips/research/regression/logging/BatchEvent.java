@@ -0,0 +1,28 @@
+package com.philips.research.regression.logging;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.philips.research.regression.Batch")
+@Label("Protocol Batch")
+@Category({"Logistic Regression", "FRESCO"})
+@Description("Evaluation of a batch of native protocols")
+@StackTrace(false)
+class BatchEvent extends Event {
+    @Label("Native Protocols")
+    int nativeProtocols;
+
+    @Label("Protocol Types")
+    @Description("Simple names of the types of native protocols in the batch, with their counts")
+    String protocolTypes;
+
+    @Label("Network Wait")
+    @Description("Time spent waiting for messages from other parties")
+    @Timespan(Timespan.NANOSECONDS)
+    long networkWait;
+}
@@ -0,0 +1,85 @@
+package com.philips.research.regression.logging;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzInputMask;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzSInt;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzTriple;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDataSupplier;
+
+/**
+ * Counts the preprocessed material that SPDZ draws from another supplier.
+ */
+public class CountingDataSupplier implements SpdzDataSupplier {
+    private final SpdzDataSupplier supplier;
+
+    private long triples;
+    private long inputMasks;
+    private long bits;
+    private long expPipes;
+    private long randomElements;
+
+    public CountingDataSupplier(SpdzDataSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public SpdzTriple getNextTriple() {
+        triples++;
+        return supplier.getNextTriple();
+    }
+
+    @Override
+    public SpdzSInt[] getNextExpPipe() {
+        expPipes++;
+        return supplier.getNextExpPipe();
+    }
+
+    @Override
+    public SpdzInputMask getNextInputMask(int towardPlayerId) {
+        inputMasks++;
+        return supplier.getNextInputMask(towardPlayerId);
+    }
+
+    @Override
+    public SpdzSInt getNextBit() {
+        bits++;
+        return supplier.getNextBit();
+    }
+
+    @Override
+    public FieldDefinition getFieldDefinition() {
+        return supplier.getFieldDefinition();
+    }
+
+    @Override
+    public FieldElement getSecretSharedKey() {
+        return supplier.getSecretSharedKey();
+    }
+
+    @Override
+    public SpdzSInt getNextRandomFieldElement() {
+        randomElements++;
+        return supplier.getNextRandomFieldElement();
+    }
+
+    public long getTriples() {
+        return triples;
+    }
+
+    public long getInputMasks() {
+        return inputMasks;
+    }
+
+    public long getBits() {
+        return bits;
+    }
+
+    public long getExpPipes() {
+        return expPipes;
+    }
+
+    public long getRandomElements() {
+        return randomElements;
+    }
+}
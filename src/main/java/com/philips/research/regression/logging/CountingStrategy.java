@@ -0,0 +1,125 @@
+package com.philips.research.regression.logging;
+
+import dk.alexandra.fresco.framework.NativeProtocol;
+import dk.alexandra.fresco.framework.sce.evaluator.BatchEvaluationStrategy;
+import dk.alexandra.fresco.framework.sce.evaluator.BatchedStrategy;
+import dk.alexandra.fresco.framework.sce.evaluator.NetworkBatchDecorator;
+import dk.alexandra.fresco.framework.sce.evaluator.ProtocolCollection;
+import dk.alexandra.fresco.framework.sce.resources.ResourcePool;
+import dk.alexandra.fresco.logging.PerformanceLogger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the number of batches, rounds and native protocols that another
+ * strategy evaluates. The logging decorators that come with FRESCO can only
+ * observe whole batches, so they are unable to tell how many rounds were
+ * needed; here every flush of the network is counted as a round.
+ */
+public class CountingStrategy<ResourcePoolT extends ResourcePool>
+    implements BatchEvaluationStrategy<ResourcePoolT>, PerformanceLogger {
+
+    public static final String BATCHES = "BATCHES";
+    public static final String ROUNDS = "ROUNDS";
+    public static final String NATIVE_PROTOCOLS = "NATIVE_PROTOCOLS";
+
+    private final BatchEvaluationStrategy<ResourcePoolT> strategy;
+    private volatile long batches;
+    private volatile long rounds;
+    private volatile long nativeProtocols;
+    private final Map<Class<?>, Long> nativeProtocolsByType = new HashMap<>();
+    private RoundCountingNetwork roundCounting;
+
+    /**
+     * Counts FRESCO's batched strategy.
+     */
+    public CountingStrategy() {
+        this(new BatchedStrategy<>());
+    }
+
+    public CountingStrategy(BatchEvaluationStrategy<ResourcePoolT> strategy) {
+        this.strategy = strategy;
+    }
+
+    @Override
+    public void processBatch(ProtocolCollection<ResourcePoolT> protocols, ResourcePoolT resourcePool,
+                             NetworkBatchDecorator network) {
+        batches++;
+        nativeProtocols += protocols.size();
+        for (NativeProtocol<?, ResourcePoolT> protocol : protocols) {
+            nativeProtocolsByType.merge(protocol.getClass(), 1L, Long::sum);
+        }
+        if (roundCounting == null || roundCounting.network != network) {
+            roundCounting = new RoundCountingNetwork(network);
+        }
+        strategy.processBatch(protocols, resourcePool, roundCounting);
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getRounds() {
+        return rounds;
+    }
+
+    public long getNativeProtocols() {
+        return nativeProtocols;
+    }
+
+    /**
+     * @return the number of native protocols that are instances of the given type
+     */
+    public long getNativeProtocols(Class<?> type) {
+        return nativeProtocolsByType.entrySet().stream()
+            .filter(entry -> type.isAssignableFrom(entry.getKey()))
+            .mapToLong(Map.Entry::getValue)
+            .sum();
+    }
+
+    @Override
+    public Map<String, Long> getLoggedValues() {
+        Map<String, Long> values = new HashMap<>();
+        values.put(BATCHES, batches);
+        values.put(ROUNDS, rounds);
+        values.put(NATIVE_PROTOCOLS, nativeProtocols);
+        return values;
+    }
+
+    @Override
+    public void reset() {
+        batches = 0;
+        rounds = 0;
+        nativeProtocols = 0;
+        nativeProtocolsByType.clear();
+    }
+
+    /**
+     * Strategies flush the network at the end of every round.
+     */
+    private class RoundCountingNetwork extends NetworkBatchDecorator {
+        private final NetworkBatchDecorator network;
+
+        RoundCountingNetwork(NetworkBatchDecorator network) {
+            super(network.getNoOfParties(), network);
+            this.network = network;
+        }
+
+        @Override
+        public void send(int partyId, byte[] data) {
+            network.send(partyId, data);
+        }
+
+        @Override
+        public byte[] receive(int partyId) {
+            return network.receive(partyId);
+        }
+
+        @Override
+        public void flush() {
+            network.flush();
+            rounds++;
+        }
+    }
+}
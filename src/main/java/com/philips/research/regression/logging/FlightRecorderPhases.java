@@ -0,0 +1,34 @@
+package com.philips.research.regression.logging;
+
+import jdk.jfr.EventType;
+
+/**
+ * Emits a Java Flight Recorder event for every phase of a computation. A
+ * phase lasts until the next one starts, or until {@link #finish()}.
+ */
+public class FlightRecorderPhases implements PhaseListener {
+    private PhaseEvent current;
+
+    /**
+     * @return whether a running recording includes phase events, which is
+     * only worth marking phases for
+     */
+    public static boolean isRecording() {
+        return EventType.getEventType(PhaseEvent.class).isEnabled();
+    }
+
+    @Override
+    public void phaseStarted(String name) {
+        finish();
+        current = new PhaseEvent();
+        current.phase = name;
+        current.begin();
+    }
+
+    public void finish() {
+        if (current != null) {
+            current.commit();
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.philips.research.regression.logging;
+
+import com.philips.research.regression.network.WaitTimingNetwork;
+import dk.alexandra.fresco.framework.NativeProtocol;
+import dk.alexandra.fresco.framework.sce.evaluator.BatchEvaluationStrategy;
+import dk.alexandra.fresco.framework.sce.evaluator.NetworkBatchDecorator;
+import dk.alexandra.fresco.framework.sce.evaluator.ProtocolCollection;
+import dk.alexandra.fresco.framework.sce.resources.ResourcePool;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Emits a Java Flight Recorder event for every batch that another strategy
+ * evaluates. The protocol types are only collected while a recording that
+ * includes the event is running, and otherwise the batch is passed on
+ * without any bookkeeping. Unlike the debug log, events contain no values, so
+ * they are safe to record in production.
+ */
+public class FlightRecorderStrategy<ResourcePoolT extends ResourcePool>
+    implements BatchEvaluationStrategy<ResourcePoolT> {
+
+    private static final EventType BATCH_EVENTS = EventType.getEventType(BatchEvent.class);
+
+    private final BatchEvaluationStrategy<ResourcePoolT> strategy;
+    private final WaitTimingNetwork network;
+
+    /**
+     * @param network measures the time that the batches wait for other parties
+     */
+    public FlightRecorderStrategy(BatchEvaluationStrategy<ResourcePoolT> strategy, WaitTimingNetwork network) {
+        this.strategy = strategy;
+        this.network = network;
+    }
+
+    /**
+     * @return whether this JVM can record events at all
+     */
+    public static boolean isAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    /**
+     * @return whether a running recording includes batch events, which is
+     * only worth timing the network for
+     */
+    public static boolean isRecording() {
+        return BATCH_EVENTS.isEnabled();
+    }
+
+    @Override
+    public void processBatch(ProtocolCollection<ResourcePoolT> protocols, ResourcePoolT resourcePool,
+                             NetworkBatchDecorator networkBatchDecorator) {
+        if (!isRecording()) {
+            strategy.processBatch(protocols, resourcePool, networkBatchDecorator);
+            return;
+        }
+        BatchEvent event = new BatchEvent();
+        event.nativeProtocols = protocols.size();
+        event.protocolTypes = protocolTypes(protocols);
+        long waitBefore = network.getReceiveNanos();
+        event.begin();
+        strategy.processBatch(protocols, resourcePool, networkBatchDecorator);
+        event.end();
+        if (event.shouldCommit()) {
+            event.networkWait = network.getReceiveNanos() - waitBefore;
+            event.commit();
+        }
+    }
+
+    private String protocolTypes(ProtocolCollection<ResourcePoolT> protocols) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (NativeProtocol<?, ResourcePoolT> protocol : protocols) {
+            counts.merge(protocol.getClass().getSimpleName(), 1, Integer::sum);
+        }
+        return counts.toString();
+    }
+}
@@ -0,0 +1,18 @@
+package com.philips.research.regression.logging;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.philips.research.regression.Phase")
+@Label("Application Phase")
+@Category({"Logistic Regression"})
+@Description("Phase of a fit, such as the Cholesky decomposition or an iteration")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+}
@@ -0,0 +1,22 @@
+package com.philips.research.regression.logging;
+
+import java.util.List;
+
+/**
+ * Is told when the computation moves on to a new phase, such as the
+ * Cholesky decomposition or an iteration of the fit.
+ */
+public interface PhaseListener {
+    void phaseStarted(String name);
+
+    /**
+     * @return a listener that tells all of the given listeners, in order
+     */
+    static PhaseListener all(List<PhaseListener> listeners) {
+        return name -> {
+            for (PhaseListener listener : listeners) {
+                listener.phaseStarted(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,242 @@
+package com.philips.research.regression.logging;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.philips.research.regression.network.CountingNetwork;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Attributes the costs of a computation to the phases that are marked with
+ * {@link Phases}: wall time, rounds, bytes on the network, native protocols,
+ * openings, preprocessed material and the bytes allocated by the evaluating
+ * thread.
+ * A phase ends where the next one starts, so phases that run side by side,
+ * such as the fits for several lambdas, share their costs with whichever
+ * phase was started last.
+ */
+public class PhaseTracer implements PhaseListener {
+    private final CountingNetwork network;
+    private final CountingStrategy<?> strategy;
+    private final CountingDataSupplier supplier;
+    private final Class<?> openingType;
+    private final List<Costs> phases = new ArrayList<>();
+    private String currentPhase;
+    private Costs phaseStart;
+
+    /**
+     * @param supplier    counts the preprocessed material, or null when the
+     *                    protocol suite uses none
+     * @param openingType the native protocol with which the suite opens a
+     *                    value to all parties, or null to not count openings
+     */
+    public PhaseTracer(CountingNetwork network, CountingStrategy<?> strategy, CountingDataSupplier supplier,
+                       Class<?> openingType) {
+        this.network = network;
+        this.strategy = strategy;
+        this.supplier = supplier;
+        this.openingType = openingType;
+    }
+
+    /**
+     * Starts the first phase, which lasts until the application marks a
+     * phase of its own.
+     */
+    public void start() {
+        phases.clear();
+        phaseStarted("start");
+    }
+
+    @Override
+    public void phaseStarted(String name) {
+        finishPhase();
+        currentPhase = name;
+        phaseStart = snapshot(name);
+    }
+
+    /**
+     * Ends the last phase; call once the computation has been evaluated.
+     */
+    public void finish() {
+        finishPhase();
+    }
+
+    private void finishPhase() {
+        if (currentPhase != null) {
+            phases.add(snapshot(currentPhase).minus(phaseStart));
+            currentPhase = null;
+        }
+    }
+
+    private Costs snapshot(String name) {
+        Costs costs = new Costs(name);
+        costs.wallTimeNanos = System.nanoTime();
+        costs.rounds = strategy.getRounds();
+        costs.nativeProtocols = strategy.getNativeProtocols();
+        if (openingType != null) {
+            costs.openings = strategy.getNativeProtocols(openingType);
+        }
+        costs.bytesSent = network.getBytesSent();
+        costs.bytesReceived = network.getBytesReceived();
+        if (supplier != null) {
+            costs.triples = supplier.getTriples();
+            costs.inputMasks = supplier.getInputMasks();
+            costs.bits = supplier.getBits();
+            costs.expPipes = supplier.getExpPipes();
+            costs.randomElements = supplier.getRandomElements();
+        }
+        costs.allocatedBytes = allocatedBytes();
+        return costs;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    public List<Costs> getPhases() {
+        return phases;
+    }
+
+    /**
+     * @return the sum of the costs of all phases
+     */
+    public Costs getTotal() {
+        Costs total = new Costs("total");
+        for (Costs phase : phases) {
+            total = total.plus(phase);
+        }
+        return total;
+    }
+
+    public void write(Writer writer) {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        gson.toJson(new Report(phases, getTotal()), writer);
+    }
+
+    public void write(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            write(writer);
+        }
+    }
+
+    private static class Report {
+        private final List<Costs> phases;
+        private final Costs total;
+
+        Report(List<Costs> phases, Costs total) {
+            this.phases = phases;
+            this.total = total;
+        }
+    }
+
+    public static class Costs {
+        private final String phase;
+        private long wallTimeNanos;
+        private long rounds;
+        private long nativeProtocols;
+        private long openings;
+        private long bytesSent;
+        private long bytesReceived;
+        private long triples;
+        private long inputMasks;
+        private long bits;
+        private long expPipes;
+        private long randomElements;
+        private long allocatedBytes;
+
+        private Costs(String phase) {
+            this.phase = phase;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public long getWallTimeNanos() {
+            return wallTimeNanos;
+        }
+
+        public long getRounds() {
+            return rounds;
+        }
+
+        public long getNativeProtocols() {
+            return nativeProtocols;
+        }
+
+        public long getOpenings() {
+            return openings;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getTriples() {
+            return triples;
+        }
+
+        public long getInputMasks() {
+            return inputMasks;
+        }
+
+        public long getBits() {
+            return bits;
+        }
+
+        public long getExpPipes() {
+            return expPipes;
+        }
+
+        public long getRandomElements() {
+            return randomElements;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        private Costs minus(Costs other) {
+            return combine(other, -1);
+        }
+
+        private Costs plus(Costs other) {
+            return combine(other, 1);
+        }
+
+        private Costs combine(Costs other, int sign) {
+            Costs result = new Costs(phase);
+            result.wallTimeNanos = wallTimeNanos + sign * other.wallTimeNanos;
+            result.rounds = rounds + sign * other.rounds;
+            result.nativeProtocols = nativeProtocols + sign * other.nativeProtocols;
+            result.openings = openings + sign * other.openings;
+            result.bytesSent = bytesSent + sign * other.bytesSent;
+            result.bytesReceived = bytesReceived + sign * other.bytesReceived;
+            result.triples = triples + sign * other.triples;
+            result.inputMasks = inputMasks + sign * other.inputMasks;
+            result.bits = bits + sign * other.bits;
+            result.expPipes = expPipes + sign * other.expPipes;
+            result.randomElements = randomElements + sign * other.randomElements;
+            result.allocatedBytes = allocatedBytes + sign * other.allocatedBytes;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.philips.research.regression.logging;
+
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+
+/**
+ * Marks the start of the phases of a computation. Markers are only added to
+ * the protocol when a listener is installed, so marking phases costs
+ * nothing otherwise.
+ */
+public final class Phases {
+    private static volatile PhaseListener listener;
+
+    private Phases() {
+    }
+
+    /**
+     * @param listener the listener that is told about phases, or null to stop
+     *                 marking phases in computations that are built from now on
+     */
+    public static void setListener(PhaseListener listener) {
+        Phases.listener = listener;
+    }
+
+    /**
+     * Tells the listener about the phase once all protocols that were added
+     * to the builder before have been evaluated.
+     */
+    public static void start(ProtocolBuilderNumeric builder, String name) {
+        PhaseListener current = listener;
+        if (current != null) {
+            mark(builder, current, name);
+        }
+    }
+
+    /**
+     * Starts a numbered phase, such as "iteration 3". The name is only built
+     * when a listener is installed.
+     */
+    public static void start(ProtocolBuilderNumeric builder, String name, int number) {
+        PhaseListener current = listener;
+        if (current != null) {
+            mark(builder, current, name + " " + number);
+        }
+    }
+
+    private static void mark(ProtocolBuilderNumeric builder, PhaseListener listener, String name) {
+        builder.seq(seq -> {
+            listener.phaseStarted(name);
+            return null;
+        });
+    }
+}
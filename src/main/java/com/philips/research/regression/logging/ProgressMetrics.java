@@ -0,0 +1,225 @@
+package com.philips.research.regression.logging;
+
+import com.philips.research.regression.network.CountingNetwork;
+import com.philips.research.regression.preprocessing.BackgroundDataSupplier;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Follows the progress of a fit, for a metrics endpoint that is read from
+ * another thread. Only counts and phase names are exposed, never values. The
+ * counters that are read come from the network, strategy and supplier; they
+ * are volatile, so that the endpoint sees recent values, and are only written
+ * by the thread that evaluates the protocols, so they need no atomic updates.
+ * <p>
+ * The estimated time to completion follows a cost model of the phases: every
+ * phase still to come is expected to take as long as the phases of the same
+ * kind took on average so far, and the fit is expected to run for the maximum
+ * number of iterations. Phases that are part of an iteration, such as adding
+ * noise, are counted with the iteration. Kinds of phases that have not
+ * completed yet are left out, so the estimate is unknown until the first
+ * iteration completes.
+ */
+public class ProgressMetrics implements PhaseListener {
+    private static final String ITERATION = "iteration";
+    private static final String CHOLESKY = "cholesky";
+    private static final String NOISE = "noise";
+
+    private final int fits;
+    private final int iterations;
+    private final CountingNetwork network;
+    private final CountingStrategy<?> strategy;
+    private final BackgroundDataSupplier supplier;
+    private final LongSupplier clock;
+
+    private volatile String phase = "start";
+    private volatile int iteration = -1;
+    private volatile boolean done;
+
+    // Guarded by this, as the phases change while the estimate is computed
+    private final Map<String, Cost> costs = new HashMap<>();
+    private String currentKind = "start";
+    private long currentStart;
+    private int firstIteration = -1;
+
+    /**
+     * @param fits       number of models that are fitted side by side
+     * @param iterations maximum number of iterations of every fit
+     * @param supplier   holds the queues of preprocessed material, or null
+     *                   when material is not produced in the background
+     */
+    public ProgressMetrics(int fits, int iterations, CountingNetwork network, CountingStrategy<?> strategy,
+                           BackgroundDataSupplier supplier) {
+        this(fits, iterations, network, strategy, supplier, System::nanoTime);
+    }
+
+    /**
+     * @param clock tells the time in nanoseconds
+     */
+    ProgressMetrics(int fits, int iterations, CountingNetwork network, CountingStrategy<?> strategy,
+                    BackgroundDataSupplier supplier, LongSupplier clock) {
+        this.fits = fits;
+        this.iterations = iterations;
+        this.network = network;
+        this.strategy = strategy;
+        this.supplier = supplier;
+        this.clock = clock;
+        currentStart = clock.getAsLong();
+        cost(currentKind).started++;
+    }
+
+    @Override
+    public void phaseStarted(String name) {
+        String kind = kind(name);
+        synchronized (this) {
+            if (!kind.equals(NOISE)) {
+                long now = clock.getAsLong();
+                cost(currentKind).add(now - currentStart);
+                cost(kind).started++;
+                currentKind = kind;
+                currentStart = now;
+            }
+            if (kind.equals(ITERATION)) {
+                int number = Integer.parseInt(name.substring(ITERATION.length() + 1));
+                if (firstIteration < 0) {
+                    firstIteration = number;
+                }
+                // With several lambdas, iterations of different fits interleave
+                if (number > iteration) {
+                    iteration = number;
+                }
+            }
+        }
+        phase = name;
+    }
+
+    /**
+     * Marks the fit as completed, after which the estimated time is zero.
+     */
+    public void finish() {
+        phase = "done";
+        done = true;
+    }
+
+    /**
+     * @return the estimated number of seconds until the fit completes, or
+     * NaN when there is no estimate yet
+     */
+    public synchronized double secondsRemaining() {
+        if (done) {
+            return 0;
+        }
+        Cost iterationCost = costs.get(ITERATION);
+        if (iterationCost == null || iterationCost.completed == 0) {
+            return Double.NaN;
+        }
+        double remaining = 0;
+        for (Map.Entry<String, Cost> entry : costs.entrySet()) {
+            Cost cost = entry.getValue();
+            if (cost.completed > 0) {
+                remaining += Math.max(0, expected(entry.getKey()) - cost.started) * cost.average();
+            }
+        }
+        Cost current = costs.get(currentKind);
+        if (current.completed > 0) {
+            remaining += Math.max(0, current.average() - (clock.getAsLong() - currentStart));
+        }
+        return Math.max(0, remaining) / 1e9;
+    }
+
+    /**
+     * @return the number of phases of the given kind that a fit of the
+     * maximum number of iterations goes through
+     */
+    private int expected(String kind) {
+        switch (kind) {
+            case ITERATION:
+                return fits * (iterations - firstIteration);
+            case CHOLESKY:
+                return fits;
+            default:
+                return 1;
+        }
+    }
+
+    private Cost cost(String kind) {
+        return costs.computeIfAbsent(kind, key -> new Cost());
+    }
+
+    private static String kind(String phase) {
+        int space = phase.indexOf(' ');
+        return space < 0 ? phase : phase.substring(0, space);
+    }
+
+    private static class Cost {
+        int started;
+        int completed;
+        long nanos;
+
+        void add(long duration) {
+            completed++;
+            nanos += duration;
+        }
+
+        double average() {
+            return (double) nanos / completed;
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format.
+     */
+    public void write(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        gauge(out, "phase", "Phase of the fit that is being evaluated", "{phase=\"" + escape(phase) + "\"}", 1);
+        gauge(out, "iteration", "Number of the iteration that is being evaluated, or -1 before the first", "", iteration);
+        counter(out, "rounds_total", "Rounds of communication that were completed", "", strategy.getRounds());
+        counter(out, "native_protocols_total", "Native protocols that were evaluated", "", strategy.getNativeProtocols());
+        out.println("# HELP logistic_regression_network_bytes_total Bytes exchanged with the other parties");
+        out.println("# TYPE logistic_regression_network_bytes_total counter");
+        out.println("logistic_regression_network_bytes_total{direction=\"sent\"} " + network.getBytesSent());
+        out.println("logistic_regression_network_bytes_total{direction=\"received\"} " + network.getBytesReceived());
+        if (supplier != null) {
+            out.println("# HELP logistic_regression_preprocessing_queue_depth Preprocessed material that is ready for use");
+            out.println("# TYPE logistic_regression_preprocessing_queue_depth gauge");
+            out.println("logistic_regression_preprocessing_queue_depth{material=\"triples\"} " + supplier.getTripleQueueDepth());
+            out.println("logistic_regression_preprocessing_queue_depth{material=\"exp_pipes\"} " + supplier.getExpPipeQueueDepth());
+        }
+        gauge(out, "eta_seconds", "Estimated seconds until the fit completes", "", secondsRemaining());
+        out.flush();
+    }
+
+    private static void gauge(PrintWriter out, String name, String help, String labels, double value) {
+        metric(out, name, "gauge", help, labels, format(value));
+    }
+
+    private static void counter(PrintWriter out, String name, String help, String labels, long value) {
+        metric(out, name, "counter", help, labels, Long.toString(value));
+    }
+
+    private static void metric(PrintWriter out, String name, String type, String help, String labels, String value) {
+        String fullName = "logistic_regression_" + name;
+        out.println("# HELP " + fullName + " " + help);
+        out.println("# TYPE " + fullName + " " + type);
+        out.println(fullName + labels + " " + value);
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (value == Math.rint(value)) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
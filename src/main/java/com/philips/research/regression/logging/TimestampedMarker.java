@@ -6,6 +6,13 @@ import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.function.Supplier;
+
+/**
+ * Logs a debug message once the protocols that were added to a builder
+ * before it have been evaluated. Nothing is added to the builder when debug
+ * logging is disabled.
+ */
 public class TimestampedMarker implements Computation<Void, ProtocolBuilderNumeric> {
 
     private static final Logger logger = LoggerFactory.getLogger(TimestampedMarker.class);
@@ -16,7 +23,18 @@ public class TimestampedMarker implements Computation<Void, ProtocolBuilderNumer
     }
 
     public static void log(ProtocolBuilderNumeric builder, String msg) {
-        builder.seq(new TimestampedMarker(msg));
+        if (logger.isDebugEnabled()) {
+            builder.seq(new TimestampedMarker(msg));
+        }
+    }
+
+    /**
+     * Only builds the message when debug logging is enabled.
+     */
+    public static void log(ProtocolBuilderNumeric builder, Supplier<String> msg) {
+        if (logger.isDebugEnabled()) {
+            builder.seq(new TimestampedMarker(msg.get()));
+        }
     }
 
     public static void log(ProtocolBuilderNumeric builder, Computation<String, ProtocolBuilderNumeric> computation) {
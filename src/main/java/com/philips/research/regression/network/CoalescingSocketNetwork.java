@@ -0,0 +1,328 @@
+package com.philips.research.regression.network;
+
+import dk.alexandra.fresco.framework.Party;
+import dk.alexandra.fresco.framework.network.CloseableNetwork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Connects parties with TCP sockets, and coalesces the messages to a party
+ * into a single frame. Sent messages are buffered until this party receives
+ * from any other party, which is where a round of a protocol ends. All
+ * buffered messages to a party are then handed to a sender thread, which
+ * copies them into a direct buffer that it reuses, and writes that buffer.
+ * Writing a heap buffer would make the JDK copy it into a temporary direct
+ * buffer anyway.
+ * <p>
+ * A frame is the length of the rest of the frame, followed by every message
+ * prefixed with its length. All lengths are 4 byte integers.
+ * <p>
+ * Receive must be called from a single thread. Send may also be called from
+ * others, such as the thread of a {@link ShapedNetwork} that delivers delayed
+ * messages. A message that is sent while a receive waits is handed to the
+ * sender thread right away, as no receive would flush it in time.
+ */
+public class CoalescingSocketNetwork implements CloseableNetwork {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMinutes(1);
+    private static final long CONNECT_RETRY_MILLIS = 100;
+    private static final int INITIAL_BUFFER = 1 << 16;
+    /**
+     * The largest frame, without its own length, that fits in a buffer.
+     */
+    private static final int MAX_FRAME_LENGTH = Integer.MAX_VALUE - 16;
+
+    private final int myId;
+    private final int numberOfParties;
+    private final Map<Integer, Peer> peers = new HashMap<>();
+    private volatile boolean receiving;
+
+    /**
+     * Connects to the other parties, which do the same at about the same
+     * time. Every party listens on its own port and connects to the parties
+     * with lower ids.
+     */
+    public CoalescingSocketNetwork(int myId, Map<Integer, Party> parties) throws IOException {
+        this.myId = myId;
+        this.numberOfParties = parties.size();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(parties.get(myId).getPort()));
+            for (int id = 1; id < myId; id++) {
+                SocketChannel channel = connect(parties.get(id));
+                writeId(channel);
+                addPeer(id, channel);
+            }
+            for (int accepted = myId + 1; accepted <= numberOfParties; accepted++) {
+                SocketChannel channel = server.accept();
+                addPeer(readId(channel), channel);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static SocketChannel connect(Party party) throws IOException {
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT.toNanos();
+        InetSocketAddress address = new InetSocketAddress(party.getHostname(), party.getPort());
+        while (true) {
+            try {
+                return SocketChannel.open(address);
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(CONNECT_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while connecting to party " + party.getPartyId(), e);
+                }
+            }
+        }
+    }
+
+    private void writeId(SocketChannel channel) throws IOException {
+        ByteBuffer id = ByteBuffer.allocate(Integer.BYTES).putInt(0, myId);
+        while (id.hasRemaining()) {
+            channel.write(id);
+        }
+    }
+
+    private int readId(SocketChannel channel) throws IOException {
+        ByteBuffer id = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, id);
+        int partyId = id.getInt(0);
+        if (partyId <= myId || partyId > numberOfParties || peers.containsKey(partyId)) {
+            channel.close();
+            throw new IOException("Unexpected connection from party " + partyId);
+        }
+        return partyId;
+    }
+
+    private void addPeer(int partyId, SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        peers.put(partyId, new Peer(partyId, channel));
+    }
+
+    @Override
+    public void send(int partyId, byte[] data) {
+        Peer peer = peer(partyId);
+        synchronized (peer) {
+            peer.pending.add(data);
+            if (receiving) {
+                peer.flush();
+            }
+        }
+    }
+
+    /**
+     * Flushes the messages to all parties before waiting for a message, as
+     * the other party may need them before it can reply.
+     */
+    @Override
+    public byte[] receive(int partyId) {
+        Peer peer = peer(partyId);
+        // Set before flushing, so that a concurrent send either adds to what
+        // is flushed here, or flushes itself
+        receiving = true;
+        try {
+            flush();
+            if (peer.received.isEmpty()) {
+                peer.readFrame();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to receive from party " + partyId, e);
+        } finally {
+            receiving = false;
+        }
+        return peer.received.remove();
+    }
+
+    private void flush() {
+        for (Peer peer : peers.values()) {
+            peer.flush();
+        }
+    }
+
+    private Peer peer(int partyId) {
+        Peer peer = peers.get(partyId);
+        if (peer == null) {
+            throw new IllegalArgumentException("Not connected to party " + partyId);
+        }
+        peer.checkFailure();
+        return peer;
+    }
+
+    @Override
+    public int getNoOfParties() {
+        return numberOfParties;
+    }
+
+    /**
+     * Sends the messages that are still buffered, and closes the connections
+     * once they are written.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Peer peer : peers.values()) {
+            try {
+                peer.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        peers.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Doubles the capacity of a buffer until it holds the given number of
+     * bytes, but never beyond what a buffer can hold.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int bytes) {
+        if (buffer.capacity() >= bytes) {
+            return buffer;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < bytes) {
+            capacity *= 2;
+        }
+        return ByteBuffer.allocateDirect((int) Math.min(capacity, Integer.BYTES + MAX_FRAME_LENGTH));
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed by the other party");
+            }
+        }
+    }
+
+    private static class Peer {
+        private static final List<byte[]> END = Collections.emptyList();
+
+        private final SocketChannel channel;
+        private final Thread sender;
+        private final BlockingQueue<List<byte[]>> frames = new LinkedBlockingQueue<>();
+        // Guarded by this peer
+        private List<byte[]> pending = new ArrayList<>();
+        private final Queue<byte[]> received = new ArrayDeque<>();
+        private final ByteBuffer frameLength = ByteBuffer.allocateDirect(Integer.BYTES);
+        private ByteBuffer readBuffer = ByteBuffer.allocateDirect(INITIAL_BUFFER);
+        private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(INITIAL_BUFFER);
+        private volatile IOException failure;
+
+        Peer(int partyId, SocketChannel channel) {
+            this.channel = channel;
+            sender = new Thread(this::send, "coalescing-network-sender-" + partyId);
+            sender.setDaemon(true);
+            sender.start();
+        }
+
+        synchronized void flush() {
+            if (!pending.isEmpty()) {
+                frames.add(pending);
+                pending = new ArrayList<>();
+            }
+        }
+
+        void checkFailure() {
+            IOException e = failure;
+            if (e != null) {
+                throw new UncheckedIOException("Failed to send", e);
+            }
+        }
+
+        private void send() {
+            try {
+                for (List<byte[]> frame = frames.take(); frame != END; frame = frames.take()) {
+                    write(frame);
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(List<byte[]> messages) throws IOException {
+            long frameBytes = 0;
+            for (byte[] message : messages) {
+                frameBytes += Integer.BYTES + message.length;
+            }
+            if (frameBytes > MAX_FRAME_LENGTH) {
+                throw new IOException("Frame of " + frameBytes + " bytes is too large");
+            }
+            writeBuffer = grow(writeBuffer, Integer.BYTES + (int) frameBytes);
+            writeBuffer.clear();
+            writeBuffer.putInt((int) frameBytes);
+            for (byte[] message : messages) {
+                writeBuffer.putInt(message.length);
+                writeBuffer.put(message);
+            }
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        }
+
+        /**
+         * Reads a frame and queues its messages. A frame whose lengths do not
+         * add up fails the connection, rather than the memory of this party.
+         */
+        void readFrame() throws IOException {
+            frameLength.clear();
+            readFully(channel, frameLength);
+            int length = frameLength.getInt(0);
+            if (length < 0 || length > MAX_FRAME_LENGTH) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            readBuffer = grow(readBuffer, length);
+            readBuffer.clear().limit(length);
+            readFully(channel, readBuffer);
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                int messageLength = readBuffer.remaining() >= Integer.BYTES ? readBuffer.getInt() : -1;
+                if (messageLength < 0 || messageLength > readBuffer.remaining()) {
+                    throw new IOException("Invalid message length in a frame of " + length + " bytes");
+                }
+                byte[] message = new byte[messageLength];
+                readBuffer.get(message);
+                received.add(message);
+            }
+        }
+
+        void close() throws IOException {
+            flush();
+            frames.add(END);
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
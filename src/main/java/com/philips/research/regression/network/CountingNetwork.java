@@ -0,0 +1,55 @@
+package com.philips.research.regression.network;
+
+import dk.alexandra.fresco.framework.network.CloseableNetwork;
+import dk.alexandra.fresco.framework.network.Network;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Counts the bytes that are sent and received over another network. FRESCO's
+ * logging decorator only counts received bytes, per batch.
+ */
+public class CountingNetwork implements CloseableNetwork {
+    private final Network network;
+
+    private volatile long bytesSent;
+    private volatile long bytesReceived;
+
+    public CountingNetwork(Network network) {
+        this.network = network;
+    }
+
+    @Override
+    public void send(int partyId, byte[] data) {
+        bytesSent += data.length;
+        network.send(partyId, data);
+    }
+
+    @Override
+    public byte[] receive(int partyId) {
+        byte[] data = network.receive(partyId);
+        bytesReceived += data.length;
+        return data;
+    }
+
+    @Override
+    public int getNoOfParties() {
+        return network.getNoOfParties();
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (network instanceof Closeable) {
+            ((Closeable) network).close();
+        }
+    }
+}
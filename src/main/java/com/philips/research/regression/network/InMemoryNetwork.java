@@ -0,0 +1,124 @@
+package com.philips.research.regression.network;
+
+import dk.alexandra.fresco.framework.network.CloseableNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Connects parties that run as threads in the same process. Every pair of
+ * parties has a lock-free queue in each direction. A receiving party spins
+ * briefly and then parks with growing intervals until a message arrives,
+ * because messages usually follow each other closely within a round.
+ * <p>
+ * Messages are passed by reference, so a sender must not modify an array
+ * after sending it.
+ */
+public class InMemoryNetwork implements CloseableNetwork {
+    private static final int SPINS = 1000;
+    private static final long MAX_PARK_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int myId;
+    private final Mailboxes mailboxes;
+
+    private InMemoryNetwork(int myId, Mailboxes mailboxes) {
+        this.myId = myId;
+        this.mailboxes = mailboxes;
+    }
+
+    /**
+     * @return the networks of parties 1 to numberOfParties, in that order
+     */
+    public static List<InMemoryNetwork> connect(int numberOfParties) {
+        if (numberOfParties < 1) {
+            throw new IllegalArgumentException("Expected at least one party, got " + numberOfParties);
+        }
+        Mailboxes mailboxes = new Mailboxes(numberOfParties);
+        List<InMemoryNetwork> networks = new ArrayList<>(numberOfParties);
+        for (int party = 1; party <= numberOfParties; party++) {
+            networks.add(new InMemoryNetwork(party, mailboxes));
+        }
+        return networks;
+    }
+
+    @Override
+    public void send(int partyId, byte[] data) {
+        mailboxes.get(myId, partyId).add(data);
+    }
+
+    /**
+     * @throws IllegalStateException when the other party closed its network
+     *                               without sending the message
+     */
+    @Override
+    public byte[] receive(int partyId) {
+        Queue<byte[]> mailbox = mailboxes.get(partyId, myId);
+        byte[] message = mailbox.poll();
+        int spins = 0;
+        long park = 1000;
+        while (message == null) {
+            if (mailboxes.isClosed(partyId)) {
+                message = mailbox.poll();
+                if (message == null) {
+                    throw new IllegalStateException("Party " + partyId + " closed its network");
+                }
+                break;
+            }
+            if (spins < SPINS) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(park);
+                park = Math.min(2 * park, MAX_PARK_NANOSECONDS);
+            }
+            message = mailbox.poll();
+        }
+        return message;
+    }
+
+    @Override
+    public int getNoOfParties() {
+        return mailboxes.numberOfParties;
+    }
+
+    @Override
+    public void close() {
+        mailboxes.close(myId);
+    }
+
+    private static class Mailboxes {
+        private final int numberOfParties;
+        private final Queue<byte[]>[] queues;
+        private final AtomicIntegerArray closed;
+
+        @SuppressWarnings("unchecked")
+        private Mailboxes(int numberOfParties) {
+            this.numberOfParties = numberOfParties;
+            this.queues = new Queue[numberOfParties * numberOfParties];
+            for (int i = 0; i < queues.length; i++) {
+                queues[i] = new ConcurrentLinkedQueue<>();
+            }
+            this.closed = new AtomicIntegerArray(numberOfParties);
+        }
+
+        Queue<byte[]> get(int from, int to) {
+            if (from < 1 || from > numberOfParties || to < 1 || to > numberOfParties) {
+                throw new IllegalArgumentException("No party " + (from < 1 || from > numberOfParties ? from : to));
+            }
+            return queues[(from - 1) * numberOfParties + (to - 1)];
+        }
+
+        boolean isClosed(int party) {
+            return closed.get(party - 1) != 0;
+        }
+
+        void close(int party) {
+            closed.set(party - 1, 1);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.philips.research.regression.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Properties of the link from one party to another, as simulated by a
+ * {@link ShapedNetwork}.
+ */
+public class LinkShape {
+    public static final LinkShape UNSHAPED = new LinkShape(0, 0, 0);
+
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final long bitsPerSecond;
+
+    /**
+     * @param latencyNanos  one-way delay of every message
+     * @param jitterNanos   maximum random delay on top of the latency
+     * @param bitsPerSecond bandwidth of the link, or 0 for unlimited
+     */
+    public LinkShape(long latencyNanos, long jitterNanos, long bitsPerSecond) {
+        if (latencyNanos < 0 || jitterNanos < 0 || bitsPerSecond < 0) {
+            throw new IllegalArgumentException("Expected non-negative latency, jitter and bandwidth");
+        }
+        this.latencyNanos = latencyNanos;
+        this.jitterNanos = jitterNanos;
+        this.bitsPerSecond = bitsPerSecond;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public long getJitterNanos() {
+        return jitterNanos;
+    }
+
+    public long getBitsPerSecond() {
+        return bitsPerSecond;
+    }
+
+    public boolean isUnshaped() {
+        return latencyNanos == 0 && jitterNanos == 0 && bitsPerSecond == 0;
+    }
+
+    /**
+     * @return the time it takes to put a message of the given size on the link
+     */
+    long transmissionNanos(int bytes) {
+        return bitsPerSecond == 0 ? 0 : 8L * bytes * TimeUnit.SECONDS.toNanos(1) / bitsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "latency " + latencyNanos + " ns, jitter " + jitterNanos + " ns, "
+            + (bitsPerSecond == 0 ? "unlimited bandwidth" : bitsPerSecond + " bit/s");
+    }
+}
@@ -0,0 +1,32 @@
+package com.philips.research.regression.network;
+
+import dk.alexandra.fresco.framework.network.Network;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Network for a single party, which only ever talks to itself.
+ */
+public class LoopbackNetwork implements Network {
+    private final Queue<byte[]> messages = new ArrayDeque<>();
+
+    @Override
+    public void send(int partyId, byte[] data) {
+        messages.add(data);
+    }
+
+    @Override
+    public byte[] receive(int partyId) {
+        byte[] message = messages.poll();
+        if (message == null) {
+            throw new IllegalStateException("No message available for party " + partyId);
+        }
+        return message;
+    }
+
+    @Override
+    public int getNoOfParties() {
+        return 1;
+    }
+}
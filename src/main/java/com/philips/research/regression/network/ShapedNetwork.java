@@ -0,0 +1,135 @@
+package com.philips.research.regression.network;
+
+import dk.alexandra.fresco.framework.network.CloseableNetwork;
+import dk.alexandra.fresco.framework.network.Network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays the messages to other parties as if they travelled over a slower
+ * link, for benchmarking wide area deployments on a single machine. Every
+ * party only shapes what it sends, so every party needs this decorator.
+ * <p>
+ * A message occupies the link for as long as its size takes at the
+ * bandwidth of the link, after the messages before it. It is then handed to
+ * the underlying network after the latency plus a random jitter. Messages to
+ * the same party keep their order, even with jitter.
+ */
+public class ShapedNetwork implements CloseableNetwork {
+    private final Network network;
+    private final Map<Integer, Link> links = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+    private volatile RuntimeException failure;
+
+    /**
+     * @param shapes the link to every other party; parties without a shape
+     *               are not delayed
+     * @param seed   seeds the jitter, so that runs can be repeated
+     */
+    public ShapedNetwork(Network network, Map<Integer, LinkShape> shapes, long seed) {
+        this.network = network;
+        this.random = new Random(seed);
+        for (Map.Entry<Integer, LinkShape> shape : shapes.entrySet()) {
+            if (!shape.getValue().isUnshaped()) {
+                links.put(shape.getKey(), new Link(shape.getValue()));
+            }
+        }
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "shaped-network");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Messages that are still on their way are delivered when closing
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(true);
+        scheduler = executor;
+    }
+
+    @Override
+    public void send(int partyId, byte[] data) {
+        checkFailure();
+        Link link = links.get(partyId);
+        if (link == null) {
+            network.send(partyId, data);
+            return;
+        }
+        long delay = link.deliveryTime(data.length, random) - System.nanoTime();
+        link.inFlight.add(data);
+        scheduler.schedule(() -> forward(partyId, link), Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Delivers the oldest message on the link. Tasks whose delivery times
+     * tie may run in any order, so they do not carry a message of their own.
+     */
+    private void forward(int partyId, Link link) {
+        try {
+            network.send(partyId, link.inFlight.remove());
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    @Override
+    public byte[] receive(int partyId) {
+        checkFailure();
+        return network.receive(partyId);
+    }
+
+    private void checkFailure() {
+        RuntimeException e = failure;
+        if (e != null) {
+            throw new IllegalStateException("Delayed send failed", e);
+        }
+    }
+
+    @Override
+    public int getNoOfParties() {
+        return network.getNoOfParties();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (network instanceof Closeable) {
+            ((Closeable) network).close();
+        }
+    }
+
+    /**
+     * Keeps track of when a link becomes free, and of when the last message
+     * on it arrives. The times are only used by the sending thread.
+     */
+    private static class Link {
+        private final LinkShape shape;
+        private final Queue<byte[]> inFlight = new ConcurrentLinkedQueue<>();
+        private long freeAt;
+        private long lastDelivery;
+
+        Link(LinkShape shape) {
+            this.shape = shape;
+        }
+
+        long deliveryTime(int bytes, Random random) {
+            long departure = Math.max(System.nanoTime(), freeAt) + shape.transmissionNanos(bytes);
+            freeAt = departure;
+            long jitter = shape.getJitterNanos() == 0 ? 0 : (long) (random.nextDouble() * shape.getJitterNanos());
+            lastDelivery = Math.max(lastDelivery, departure + shape.getLatencyNanos() + jitter);
+            return lastDelivery;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.philips.research.regression.network;
+
+import dk.alexandra.fresco.framework.network.CloseableNetwork;
+import dk.alexandra.fresco.framework.network.Network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Measures how long receiving from another network blocks, while the time is
+ * asked for. Only the thread that evaluates the protocols is expected to
+ * receive.
+ */
+public class WaitTimingNetwork implements CloseableNetwork {
+    private final Network network;
+    private final BooleanSupplier timing;
+
+    private long receiveNanos;
+
+    /**
+     * @param timing tells whether to measure, as reading the clock around
+     *               every receive is not free
+     */
+    public WaitTimingNetwork(Network network, BooleanSupplier timing) {
+        this.network = network;
+        this.timing = timing;
+    }
+
+    @Override
+    public void send(int partyId, byte[] data) {
+        network.send(partyId, data);
+    }
+
+    @Override
+    public byte[] receive(int partyId) {
+        if (!timing.getAsBoolean()) {
+            return network.receive(partyId);
+        }
+        long start = System.nanoTime();
+        byte[] data = network.receive(partyId);
+        receiveNanos += System.nanoTime() - start;
+        return data;
+    }
+
+    @Override
+    public int getNoOfParties() {
+        return network.getNoOfParties();
+    }
+
+    /**
+     * @return the total time spent in receive while measuring, in nanoseconds
+     */
+    public long getReceiveNanos() {
+        return receiveNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (network instanceof Closeable) {
+            ((Closeable) network).close();
+        }
+    }
+}
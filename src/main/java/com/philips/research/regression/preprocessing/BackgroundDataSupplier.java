@@ -0,0 +1,199 @@
+package com.philips.research.regression.preprocessing;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
+import dk.alexandra.fresco.logging.PerformanceLogger;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzInputMask;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzSInt;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzTriple;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDataSupplier;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps queues of triples and exponentiation pipes filled from a background
+ * thread, so that the online computation rarely waits for the offline
+ * protocol. The supplier that produces the material is only ever used by
+ * the background thread, which should have a network channel of its own.
+ * <p>
+ * Producing material is an interactive protocol, so all parties must ask
+ * the producer for the same material in the same order. The producer
+ * therefore runs its tasks in order of submission, and refills are only
+ * submitted when the number of consumed items reaches the low watermark,
+ * which happens at the same point of the computation for every party.
+ * Refills top up the queue to the high watermark. Input masks, bits and
+ * random elements are requested from the producer when they are needed.
+ */
+public class BackgroundDataSupplier implements SpdzDataSupplier, Closeable, PerformanceLogger {
+    public static final String TRIPLE_QUEUE_DEPTH = "TRIPLE_QUEUE_DEPTH";
+    public static final String EXP_PIPE_QUEUE_DEPTH = "EXP_PIPE_QUEUE_DEPTH";
+    public static final String TRIPLE_WAITS = "TRIPLE_WAITS";
+    public static final String EXP_PIPE_WAITS = "EXP_PIPE_WAITS";
+
+    private static final long POLL_INTERVAL_MILLISECONDS = 100;
+
+    private final SpdzDataSupplier producer;
+    private final ExecutorService producerThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "preprocessing-producer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Queue<SpdzTriple> triples;
+    private final Queue<SpdzSInt[]> expPipes;
+    private volatile Throwable failure;
+
+    public BackgroundDataSupplier(SpdzDataSupplier producer, int tripleLowWatermark, int tripleHighWatermark,
+                                  int expPipeLowWatermark, int expPipeHighWatermark) {
+        this.producer = producer;
+        this.triples = new Queue<>(producer::getNextTriple, tripleLowWatermark, tripleHighWatermark);
+        this.expPipes = new Queue<>(producer::getNextExpPipe, expPipeLowWatermark, expPipeHighWatermark);
+        triples.refill();
+        expPipes.refill();
+    }
+
+    @Override
+    public SpdzTriple getNextTriple() {
+        return triples.take();
+    }
+
+    @Override
+    public SpdzSInt[] getNextExpPipe() {
+        return expPipes.take();
+    }
+
+    @Override
+    public SpdzInputMask getNextInputMask(int towardPlayerId) {
+        return request(() -> producer.getNextInputMask(towardPlayerId));
+    }
+
+    @Override
+    public SpdzSInt getNextBit() {
+        return request(producer::getNextBit);
+    }
+
+    @Override
+    public FieldDefinition getFieldDefinition() {
+        return producer.getFieldDefinition();
+    }
+
+    @Override
+    public FieldElement getSecretSharedKey() {
+        return producer.getSecretSharedKey();
+    }
+
+    @Override
+    public SpdzSInt getNextRandomFieldElement() {
+        return request(producer::getNextRandomFieldElement);
+    }
+
+    public int getTripleQueueDepth() {
+        return triples.items.size();
+    }
+
+    public int getExpPipeQueueDepth() {
+        return expPipes.items.size();
+    }
+
+    @Override
+    public Map<String, Long> getLoggedValues() {
+        Map<String, Long> values = new HashMap<>();
+        values.put(TRIPLE_QUEUE_DEPTH, (long) getTripleQueueDepth());
+        values.put(EXP_PIPE_QUEUE_DEPTH, (long) getExpPipeQueueDepth());
+        values.put(TRIPLE_WAITS, triples.waits);
+        values.put(EXP_PIPE_WAITS, expPipes.waits);
+        return values;
+    }
+
+    @Override
+    public void reset() {
+        triples.waits = 0;
+        expPipes.waits = 0;
+    }
+
+    @Override
+    public void close() {
+        producerThread.shutdownNow();
+    }
+
+    private <T> T request(Callable<T> task) {
+        try {
+            return producerThread.submit(task).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not produce preprocessed material", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for preprocessed material", e);
+        }
+    }
+
+    /**
+     * A queue of material of a single kind. Only the consuming thread
+     * submits refills, so the counters need no synchronization.
+     */
+    private class Queue<T> {
+        private final BlockingQueue<T> items = new LinkedBlockingQueue<>();
+        private final Supplier<T> source;
+        private final int lowWatermark;
+        private final int highWatermark;
+        private long scheduled;
+        private long consumed;
+        private volatile long waits;
+
+        private Queue(Supplier<T> source, int lowWatermark, int highWatermark) {
+            if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+                throw new IllegalArgumentException(
+                    "Expected 0 <= low watermark < high watermark, got " + lowWatermark + " and " + highWatermark);
+            }
+            this.source = source;
+            this.lowWatermark = lowWatermark;
+            this.highWatermark = highWatermark;
+        }
+
+        T take() {
+            consumed++;
+            if (scheduled - consumed <= lowWatermark) {
+                refill();
+            }
+            try {
+                T item = items.poll();
+                if (item == null) {
+                    waits++;
+                    while ((item = items.poll(POLL_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS)) == null) {
+                        if (failure != null) {
+                            throw new IllegalStateException("Could not produce preprocessed material", failure);
+                        }
+                    }
+                }
+                return item;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for preprocessed material", e);
+            }
+        }
+
+        void refill() {
+            long count = highWatermark - (scheduled - consumed);
+            scheduled += count;
+            producerThread.execute(() -> {
+                try {
+                    for (long i = 0; i < count; i++) {
+                        items.add(source.get());
+                    }
+                } catch (RuntimeException | Error e) {
+                    failure = e;
+                    throw e;
+                }
+            });
+        }
+    }
+}
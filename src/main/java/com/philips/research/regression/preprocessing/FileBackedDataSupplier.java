@@ -0,0 +1,337 @@
+package com.philips.research.regression.preprocessing;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
+import dk.alexandra.fresco.framework.network.Network;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzInputMask;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzSInt;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzTriple;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDataSupplier;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Supplies SPDZ with material that was generated ahead of time by a
+ * {@link Preprocessor}, so that the online phase does not wait for Mascot.
+ * <p>
+ * Material must never be used twice. Before the supplier hands out an item
+ * of some kind, it reserves a block of items of that kind in the consumed
+ * file, and the next run starts after everything that was reserved. A run
+ * that crashes therefore never causes material to be used again, at the
+ * price of skipping what it reserved but did not use. A store that is
+ * marked as in use, because a run did not close it, is only taken over
+ * when asked for, such as when a crashed fit is resumed.
+ */
+public class FileBackedDataSupplier implements SpdzDataSupplier, Closeable {
+    static final String TRIPLES = "triples";
+    static final String BITS = "bits";
+    static final String RANDOM_ELEMENTS = "random-elements";
+    static final String EXP_PIPES = "exp-pipes";
+    static final String MODULUS = "modulus";
+    static final String KEY = "mac-key";
+    static final String CONSUMED = "consumed";
+    static final String IN_USE = "in-use";
+    static final int RESERVATION = 1024;
+    private static final String POSITION = ".position";
+    private static final String USED = ".used";
+    private static final String RESERVED = ".reserved";
+
+    private final Path directory;
+    private final int myId;
+    private final FieldDefinition definition;
+    private final FieldElement key;
+    private final Map<String, Material> materials = new LinkedHashMap<>();
+
+    private FileBackedDataSupplier(Path directory, int myId, int numberOfPlayers, FieldDefinition definition)
+        throws IOException {
+        this.directory = directory;
+        this.myId = myId;
+        this.definition = definition;
+        this.key = definition.deserialize(Files.readAllBytes(directory.resolve(KEY)));
+        Properties consumed = readConsumed(directory);
+        try {
+            openMaterial(TRIPLES, consumed, 6);
+            openMaterial(BITS, consumed, 2);
+            openMaterial(RANDOM_ELEMENTS, consumed, 2);
+            openMaterial(EXP_PIPES, consumed, 0);
+            for (int player = 1; player <= numberOfPlayers; player++) {
+                openMaterial(inputMasks(player), consumed, player == myId ? 3 : 2);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeReaders();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the material of a party that was written to the given directory
+     * by {@link Preprocessor#generate}.
+     */
+    public static FileBackedDataSupplier open(Path directory, int myId, int numberOfPlayers,
+                                              FieldDefinition definition) throws IOException {
+        return open(directory, myId, numberOfPlayers, definition, false);
+    }
+
+    /**
+     * @param takeOver whether to continue with a store that is marked as in
+     *                 use, after the run that used it crashed
+     */
+    public static FileBackedDataSupplier open(Path directory, int myId, int numberOfPlayers,
+                                              FieldDefinition definition, boolean takeOver) throws IOException {
+        Path partyDirectory = partyDirectory(directory, myId);
+        BigInteger modulus = new BigInteger(new String(Files.readAllBytes(partyDirectory.resolve(MODULUS)), UTF_8));
+        if (!modulus.equals(definition.getModulus())) {
+            throw new IllegalArgumentException(
+                "The material in " + partyDirectory + " was generated for a different modulus");
+        }
+        Path inUse = partyDirectory.resolve(IN_USE);
+        boolean takenOver = takeOver && Files.exists(inUse);
+        if (!takenOver) {
+            try {
+                Files.createFile(inUse);
+            } catch (FileAlreadyExistsException e) {
+                throw new IllegalStateException("The material in " + partyDirectory + " is in use, or was in use " +
+                    "by a run that did not finish; resume that run, or generate new material with the preprocess " +
+                    "command");
+            }
+        }
+        try {
+            return new FileBackedDataSupplier(partyDirectory, myId, numberOfPlayers, definition);
+        } catch (IOException | RuntimeException e) {
+            if (!takenOver) {
+                Files.delete(inUse);
+            }
+            throw e;
+        }
+    }
+
+    static Path partyDirectory(Path directory, int myId) {
+        return directory.resolve("party-" + myId);
+    }
+
+    static String inputMasks(int towardPlayerId) {
+        return "input-masks-" + towardPlayerId;
+    }
+
+    @Override
+    public SpdzTriple getNextTriple() {
+        MappedRecordReader reader = next(TRIPLES);
+        SpdzSInt a = readSInt(reader);
+        SpdzSInt b = readSInt(reader);
+        SpdzSInt c = readSInt(reader);
+        return new SpdzTriple(a, b, c);
+    }
+
+    @Override
+    public SpdzSInt[] getNextExpPipe() {
+        MappedRecordReader reader = next(EXP_PIPES);
+        SpdzSInt[] pipe = new SpdzSInt[reader.readInt()];
+        for (int i = 0; i < pipe.length; i++) {
+            pipe[i] = readSInt(reader);
+        }
+        return pipe;
+    }
+
+    @Override
+    public SpdzInputMask getNextInputMask(int towardPlayerId) {
+        if (!materials.containsKey(inputMasks(towardPlayerId))) {
+            throw new IllegalArgumentException("No input masks for player " + towardPlayerId);
+        }
+        MappedRecordReader reader = next(inputMasks(towardPlayerId));
+        SpdzSInt mask = readSInt(reader);
+        if (towardPlayerId != myId) {
+            return new SpdzInputMask(mask);
+        }
+        return new SpdzInputMask(mask, readElement(reader));
+    }
+
+    @Override
+    public SpdzSInt getNextBit() {
+        return readSInt(next(BITS));
+    }
+
+    @Override
+    public FieldDefinition getFieldDefinition() {
+        return definition;
+    }
+
+    @Override
+    public FieldElement getSecretSharedKey() {
+        return key;
+    }
+
+    @Override
+    public SpdzSInt getNextRandomFieldElement() {
+        return readSInt(next(RANDOM_ELEMENTS));
+    }
+
+    /**
+     * Continues at the same items as the other parties, after all material
+     * that any of them may have used. Parties that stop together agree
+     * already, but after a crash every party has reserved a different amount.
+     * How much material was used is public, so it is exchanged in the clear.
+     * Every party has to call this before any material is used.
+     */
+    public void synchronize(Network network) {
+        ByteBuffer mine = ByteBuffer.allocate(materials.size() * Long.BYTES);
+        for (Material material : materials.values()) {
+            mine.putLong(material.used);
+        }
+        for (int party = 1; party <= network.getNoOfParties(); party++) {
+            if (party != myId) {
+                network.send(party, mine.array());
+            }
+        }
+        for (int party = 1; party <= network.getNoOfParties(); party++) {
+            if (party != myId) {
+                ByteBuffer theirs = ByteBuffer.wrap(network.receive(party));
+                if (theirs.remaining() != mine.capacity()) {
+                    throw new IllegalStateException("Party " + party + " has different kinds of material");
+                }
+                for (Material material : materials.values()) {
+                    material.skipTo(theirs.getLong());
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves how much of every file has been consumed and releases the store
+     * for the next run.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Material material : materials.values()) {
+            material.reserved = material.used;
+        }
+        writeConsumed();
+        closeReaders();
+        Files.delete(directory.resolve(IN_USE));
+    }
+
+    /**
+     * Counts the next item of a kind, reserving more items first when all
+     * reserved ones have been used.
+     */
+    private MappedRecordReader next(String name) {
+        Material material = materials.get(name);
+        if (material.used == material.reserved) {
+            material.reserved += RESERVATION;
+            try {
+                writeConsumed();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        material.used++;
+        return material.reader;
+    }
+
+    private void writeConsumed() throws IOException {
+        Properties consumed = new Properties();
+        for (Map.Entry<String, Material> entry : materials.entrySet()) {
+            Material material = entry.getValue();
+            consumed.setProperty(entry.getKey() + POSITION, Long.toString(material.reader.position()));
+            consumed.setProperty(entry.getKey() + USED, Long.toString(material.used));
+            consumed.setProperty(entry.getKey() + RESERVED, Long.toString(material.reserved));
+        }
+        Path temporary = Files.createTempFile(directory, CONSUMED, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, UTF_8)) {
+            consumed.store(writer, null);
+        }
+        Files.move(temporary, directory.resolve(CONSUMED), ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    /**
+     * Continues after everything that was reserved, which includes all
+     * material that a crashed run used.
+     *
+     * @param records the number of records of an item, or 0 for exponentiation
+     *                pipes, whose items start with their length
+     */
+    private void openMaterial(String name, Properties consumed, int records) throws IOException {
+        long position = Long.parseLong(consumed.getProperty(name + POSITION, "0"));
+        long used = Long.parseLong(consumed.getProperty(name + USED, "0"));
+        long reserved = Long.parseLong(consumed.getProperty(name + RESERVED, Long.toString(used)));
+        Material material = new Material(new MappedRecordReader(directory.resolve(name), position), records, used);
+        materials.put(name, material);
+        material.skipTo(reserved);
+    }
+
+    private void closeReaders() throws IOException {
+        for (Material material : materials.values()) {
+            material.reader.close();
+        }
+    }
+
+    private static Properties readConsumed(Path directory) throws IOException {
+        Properties consumed = new Properties();
+        Path file = directory.resolve(CONSUMED);
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+                consumed.load(reader);
+            }
+        }
+        return consumed;
+    }
+
+    private SpdzSInt readSInt(MappedRecordReader reader) {
+        FieldElement share = readElement(reader);
+        FieldElement mac = readElement(reader);
+        return new SpdzSInt(share, mac);
+    }
+
+    private FieldElement readElement(MappedRecordReader reader) {
+        return definition.deserialize(reader.readRecord());
+    }
+
+    /**
+     * The file of a kind of material, with the number of items that have
+     * been read from it and the number that has been reserved.
+     */
+    private static class Material {
+        final MappedRecordReader reader;
+        final int records;
+        long used;
+        long reserved;
+
+        Material(MappedRecordReader reader, int records, long used) {
+            this.reader = reader;
+            this.records = records;
+            this.used = used;
+            this.reserved = used;
+        }
+
+        /**
+         * Skips items until the given number has been used, never going
+         * back. Reaching the end of the file counts as using them all.
+         */
+        void skipTo(long items) {
+            while (used < items && !reader.atEnd()) {
+                int itemRecords = records > 0 ? records : 2 * reader.readInt();
+                for (int i = 0; i < itemRecords; i++) {
+                    reader.skipRecord();
+                }
+                used++;
+            }
+            used = Math.max(used, items);
+            reserved = Math.max(reserved, used);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.philips.research.regression.preprocessing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads the records written by {@link MaterialWriter} from a memory-mapped
+ * file. Only a single page of the file is mapped at a time, so that stores
+ * larger than the address space that a single mapping may cover can be
+ * read as well.
+ */
+class MappedRecordReader implements Closeable {
+    static final long PAGE_SIZE = 16 << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long size;
+    private long pageStart;
+    private MappedByteBuffer page;
+
+    MappedRecordReader(Path file, long position) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, READ);
+        this.size = channel.size();
+        if (position > size) {
+            channel.close();
+            throw new IllegalArgumentException("Position " + position + " lies beyond the end of " + file);
+        }
+        map(position);
+    }
+
+    /**
+     * @return the offset of the next record in the file
+     */
+    long position() {
+        return pageStart + page.position();
+    }
+
+    int readInt() {
+        ensureAvailable(Integer.BYTES);
+        return page.getInt();
+    }
+
+    /**
+     * @return whether all records have been read
+     */
+    boolean atEnd() {
+        return position() == size;
+    }
+
+    byte[] readRecord() {
+        byte[] bytes = new byte[readInt()];
+        ensureAvailable(bytes.length);
+        page.get(bytes);
+        return bytes;
+    }
+
+    void skipRecord() {
+        int length = readInt();
+        ensureAvailable(length);
+        page.position(page.position() + length);
+    }
+
+    private void ensureAvailable(int bytes) {
+        if (page.remaining() >= bytes) {
+            return;
+        }
+        long position = position();
+        if (position + bytes > size) {
+            throw new IllegalStateException(
+                "Ran out of preprocessed material in " + file + "; generate more with the preprocess command");
+        }
+        try {
+            map(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void map(long position) throws IOException {
+        pageStart = position;
+        page = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(PAGE_SIZE, size - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
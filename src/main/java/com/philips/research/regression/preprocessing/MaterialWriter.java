@@ -0,0 +1,69 @@
+package com.philips.research.regression.preprocessing;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzInputMask;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzSInt;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzTriple;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Appends preprocessed material to a file, in the format that is read back
+ * by {@link MappedRecordReader}: every field element is written as its
+ * length followed by its serialized bytes.
+ */
+class MaterialWriter implements Closeable {
+    private final DataOutputStream output;
+    private final FieldDefinition definition;
+
+    MaterialWriter(Path file, FieldDefinition definition) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        this.definition = definition;
+    }
+
+    void writeTriple(SpdzTriple triple) throws IOException {
+        writeSInt(triple.getA());
+        writeSInt(triple.getB());
+        writeSInt(triple.getC());
+    }
+
+    /**
+     * @param withRealValue whether the mask is meant for this party, which
+     *                      knows the value behind the mask
+     */
+    void writeInputMask(SpdzInputMask mask, boolean withRealValue) throws IOException {
+        writeSInt(mask.getMask());
+        if (withRealValue) {
+            writeElement(mask.getRealValue());
+        }
+    }
+
+    void writeExpPipe(SpdzSInt[] pipe) throws IOException {
+        output.writeInt(pipe.length);
+        for (SpdzSInt value : pipe) {
+            writeSInt(value);
+        }
+    }
+
+    void writeSInt(SpdzSInt value) throws IOException {
+        writeElement(value.getShare());
+        writeElement(value.getMac());
+    }
+
+    private void writeElement(FieldElement element) throws IOException {
+        byte[] bytes = definition.serialize(element);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.philips.research.regression.preprocessing;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldDefinition;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDataSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.philips.research.regression.preprocessing.FileBackedDataSupplier.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Draws a fixed amount of every kind of preprocessed material from a data
+ * supplier, typically Mascot, and writes it to a directory from which a
+ * {@link FileBackedDataSupplier} can read it later. All parties must
+ * request the same amounts, because generating the material is itself a
+ * secure computation.
+ */
+public class Preprocessor {
+    private static final Logger logger = LoggerFactory.getLogger(Preprocessor.class);
+
+    private final Path directory;
+    private final int triples;
+    private final int inputMasks;
+    private final int bits;
+    private final int randomElements;
+    private final int expPipes;
+
+    /**
+     * @param inputMasks the number of input masks for every party
+     */
+    public Preprocessor(Path directory, int triples, int inputMasks, int bits, int randomElements, int expPipes) {
+        if (triples < 0 || inputMasks < 0 || bits < 0 || randomElements < 0 || expPipes < 0) {
+            throw new IllegalArgumentException("Amounts of preprocessed material must not be negative");
+        }
+        this.directory = directory;
+        this.triples = triples;
+        this.inputMasks = inputMasks;
+        this.bits = bits;
+        this.randomElements = randomElements;
+        this.expPipes = expPipes;
+    }
+
+    /**
+     * Replaces any material of this party in the directory. The store is
+     * marked as in use until all material has been written, so that a store
+     * that was only partially written is never read.
+     */
+    public void generate(SpdzDataSupplier source, int myId, int numberOfPlayers) throws IOException {
+        Path partyDirectory = Files.createDirectories(partyDirectory(directory, myId));
+        Files.deleteIfExists(partyDirectory.resolve(CONSUMED));
+        Path inUse = partyDirectory.resolve(IN_USE);
+        if (!Files.exists(inUse)) {
+            Files.createFile(inUse);
+        }
+        FieldDefinition definition = source.getFieldDefinition();
+        Files.write(partyDirectory.resolve(MODULUS), definition.getModulus().toString().getBytes(UTF_8));
+        Files.write(partyDirectory.resolve(KEY), definition.serialize(source.getSecretSharedKey()));
+
+        logger.info("Generating " + triples + " triples");
+        try (MaterialWriter writer = new MaterialWriter(partyDirectory.resolve(TRIPLES), definition)) {
+            for (int i = 0; i < triples; i++) {
+                writer.writeTriple(source.getNextTriple());
+            }
+        }
+        logger.info("Generating " + inputMasks + " input masks for each of " + numberOfPlayers + " parties");
+        for (int player = 1; player <= numberOfPlayers; player++) {
+            try (MaterialWriter writer = new MaterialWriter(partyDirectory.resolve(inputMasks(player)), definition)) {
+                for (int i = 0; i < inputMasks; i++) {
+                    writer.writeInputMask(source.getNextInputMask(player), player == myId);
+                }
+            }
+        }
+        logger.info("Generating " + bits + " bits");
+        try (MaterialWriter writer = new MaterialWriter(partyDirectory.resolve(BITS), definition)) {
+            for (int i = 0; i < bits; i++) {
+                writer.writeSInt(source.getNextBit());
+            }
+        }
+        logger.info("Generating " + randomElements + " random elements");
+        try (MaterialWriter writer = new MaterialWriter(partyDirectory.resolve(RANDOM_ELEMENTS), definition)) {
+            for (int i = 0; i < randomElements; i++) {
+                writer.writeSInt(source.getNextRandomFieldElement());
+            }
+        }
+        logger.info("Generating " + expPipes + " exponentiation pipes");
+        try (MaterialWriter writer = new MaterialWriter(partyDirectory.resolve(EXP_PIPES), definition)) {
+            for (int i = 0; i < expPipes; i++) {
+                writer.writeExpPipe(source.getNextExpPipe());
+            }
+        }
+        Files.delete(inUse);
+    }
+}
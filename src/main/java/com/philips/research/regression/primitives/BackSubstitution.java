@@ -8,15 +8,27 @@ import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.lib.real.SReal;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
 
 class BackSubstitution implements Computation<Vector<DRes<SReal>>, ProtocolBuilderNumeric> {
     private final DRes<Matrix<DRes<SReal>>> matrix;
     private final DRes<Vector<DRes<SReal>>> vector;
+    private final List<DRes<SReal>> diagonalReciprocals;
 
     BackSubstitution(DRes<Matrix<DRes<SReal>>> matrix, DRes<Vector<DRes<SReal>>> vector) {
+        this(matrix, vector, null);
+    }
+
+    /**
+     * @param diagonalReciprocals the reciprocals of the diagonal of the matrix; when null, they are
+     *                            computed as part of the substitution
+     */
+    BackSubstitution(DRes<Matrix<DRes<SReal>>> matrix, DRes<Vector<DRes<SReal>>> vector,
+                     List<DRes<SReal>> diagonalReciprocals) {
         this.matrix = matrix;
         this.vector = vector;
+        this.diagonalReciprocals = diagonalReciprocals;
     }
 
     @Override
@@ -37,12 +49,18 @@ class BackSubstitution implements Computation<Vector<DRes<SReal>>, ProtocolBuild
 
         for (int i = n-1; i >= 0; --i) {
             x[i] = b.get(i);
-            for (int j = i+1; j < n; ++j) {
-                x[i] = seq.realNumeric().sub(x[i], seq.realNumeric().mult(u.getRow(i).get(j), x[j]));
+            if (i < n-1) {
+                List<DRes<SReal>> solved = Arrays.asList(x).subList(i+1, n);
+                x[i] = seq.realNumeric().sub(x[i], seq.realAdvanced().innerProduct(u.getRow(i).subList(i+1, n), solved));
             }
-            x[i] = seq.realNumeric().mult(x[i], seq.realAdvanced().reciprocal(u.getRow(i).get(i)));
-            //x[i] = seq.realNumeric().div(x[i], u.getRow(i).get(i));
+            x[i] = seq.realNumeric().mult(x[i], reciprocal(seq, u, i));
         }
         return x;
     }
+
+    private DRes<SReal> reciprocal(ProtocolBuilderNumeric seq, Matrix<DRes<SReal>> matrix, int i) {
+        return diagonalReciprocals != null
+            ? diagonalReciprocals.get(i)
+            : seq.realAdvanced().reciprocal(matrix.getRow(i).get(i));
+    }
 }
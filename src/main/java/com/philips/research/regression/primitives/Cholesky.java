@@ -6,81 +6,155 @@ import static java.math.BigDecimal.ZERO;
 import com.philips.research.regression.util.GenericArrayCreation;
 import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.builder.Computation;
-import dk.alexandra.fresco.framework.builder.ComputationParallel;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.lib.real.SReal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+/**
+ * Blocked, right-looking Cholesky decomposition. Columns are factored one
+ * block at a time; within a block, each column is scaled and the remaining
+ * columns of the block are updated in a single parallel round. Once a block
+ * is done, the trailing submatrix is updated in one parallel round of inner
+ * products over the columns of the block.
+ */
 public class Cholesky implements Computation<Matrix<DRes<SReal>>, ProtocolBuilderNumeric> {
-    private DRes<Matrix<DRes<SReal>>> input;
+    public static final int DEFAULT_BLOCK_SIZE = 8;
+
+    private final DRes<Matrix<DRes<SReal>>> input;
+    private final int blockSize;
 
     public Cholesky(DRes<Matrix<DRes<SReal>>> input) {
+        this(input, DEFAULT_BLOCK_SIZE);
+    }
+
+    public Cholesky(DRes<Matrix<DRes<SReal>>> input, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive, but was " + blockSize);
+        }
         this.input = input;
+        this.blockSize = blockSize;
     }
 
     @Override
     public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
-        return builder
+        return builder.seq(factorization()).seq((seq, factorization) -> factorization::getL);
+    }
+
+    /**
+     * Computes the decomposition together with the by-products that are
+     * needed to solve systems of equations with it.
+     */
+    public Computation<Factorization, ProtocolBuilderNumeric> factorization() {
+        return builder -> builder
             .seq(seq -> {
                 Matrix<DRes<SReal>> matrix = input.out();
                 DRes<SReal>[][] a = getElements(matrix);
-                return () -> new IterationState(a, 0);
+                return () -> new IterationState(a, newArray(a.length), 0);
             }).whileLoop(
                 state -> state.j < state.a.length,
-                (seq, state) -> {
-                    DRes<SReal>[][] a = state.a;
-                    int j = state.j;
-                    int d = a.length;
-                    for (int k = 0; k < j; k++) {
-                        // TODO: parallelize
-                        for (int i = j; i < d; i++) {
-                            a[i][j] = seq.realNumeric().sub(
-                                a[i][j],
-                                seq.realNumeric().mult(a[i][k], a[j][k])
-                            );
-                        }
-                    }
-                    a[j][j] = seq.realAdvanced().sqrt(a[j][j]);
-                    DRes<SReal> ajj_inverse = seq.realAdvanced().reciprocal(a[j][j]);
-//                    DRes<SReal> ajj_inverse = seq.seq(new ReciprocalSquareRoot(a[j][j]));
-                    DRes<DRes<SReal>[][]> newA = seq.par(new AjjInverseThing(a, j, ajj_inverse));
-                    return () -> new IterationState(newA.out(), j + 1);
-            }).seq((seq, state) -> {
+                (seq, state) -> seq.seq(new FactorBlock(state.a, state.reciprocals, state.j,
+                    Math.min(state.j + blockSize, state.a.length)))
+            ).seq((seq, state) -> {
                 convertToLowerTriangularMatrix(seq, state.a);
-                return () -> createMatrix(state.a);
+                return () -> new Factorization(createMatrix(state.a), Arrays.asList(state.reciprocals));
             });
     }
 
     private static class IterationState {
         DRes<SReal>[][] a;
+        DRes<SReal>[] reciprocals;
         int j;
 
-        IterationState(DRes<SReal>[][] a, int j) {
+        IterationState(DRes<SReal>[][] a, DRes<SReal>[] reciprocals, int j) {
             this.a = a;
+            this.reciprocals = reciprocals;
             this.j = j;
         }
     }
 
-    private static class AjjInverseThing implements ComputationParallel<DRes<SReal>[][], ProtocolBuilderNumeric> {
+    /**
+     * Factors columns start up to end, and then updates all columns to the
+     * right of the block.
+     */
+    private static class FactorBlock implements Computation<IterationState, ProtocolBuilderNumeric> {
         private final DRes<SReal>[][] a;
+        private final DRes<SReal>[] reciprocals;
+        private final int start;
+        private final int end;
+
+        FactorBlock(DRes<SReal>[][] a, DRes<SReal>[] reciprocals, int start, int end) {
+            this.a = a;
+            this.reciprocals = reciprocals;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public DRes<IterationState> buildComputation(ProtocolBuilderNumeric builder) {
+            return builder
+                .seq(seq -> () -> new IterationState(a, reciprocals, start))
+                .whileLoop(
+                    state -> state.j < end,
+                    (seq, state) -> seq.seq(new FactorColumn(state.a, reciprocals, state.j, end))
+                ).par((par, state) -> {
+                    int d = a.length;
+                    for (int k = end; k < d; k++) {
+                        List<DRes<SReal>> columnsOfK = Arrays.asList(a[k]).subList(start, end);
+                        for (int i = k; i < d; i++) {
+                            List<DRes<SReal>> columnsOfI = Arrays.asList(a[i]).subList(start, end);
+                            DRes<SReal> aik = a[i][k];
+                            a[i][k] = par.seq(seq -> seq.realNumeric().sub(aik,
+                                seq.realAdvanced().innerProduct(columnsOfI, columnsOfK)));
+                        }
+                    }
+                    return () -> new IterationState(a, reciprocals, end);
+                });
+        }
+    }
+
+    /**
+     * Factors column j and updates the columns of the current block to its
+     * right.
+     */
+    private static class FactorColumn implements Computation<IterationState, ProtocolBuilderNumeric> {
+        private final DRes<SReal>[][] a;
+        private final DRes<SReal>[] reciprocals;
         private final int j;
-        private final DRes<SReal> ajj_inverse;
+        private final int end;
 
-        public AjjInverseThing(DRes<SReal>[][] a, int j, DRes<SReal> ajj_inverse) {
+        FactorColumn(DRes<SReal>[][] a, DRes<SReal>[] reciprocals, int j, int end) {
             this.a = a;
+            this.reciprocals = reciprocals;
             this.j = j;
-            this.ajj_inverse = ajj_inverse;
+            this.end = end;
         }
 
         @Override
-        public DRes<DRes<SReal>[][]> buildComputation(ProtocolBuilderNumeric builder) {
-            for (int k = j + 1; k < a.length; k++) {
-                a[k][j] = builder.realNumeric().mult(a[k][j], ajj_inverse);
-            }
-
-            return () -> a;
+        public DRes<IterationState> buildComputation(ProtocolBuilderNumeric builder) {
+            return builder.seq(
+                new ReciprocalSquareRoot(a[j][j])
+            ).par((par, roots) -> {
+                DRes<SReal> ajj_inverse = roots.getFirst();
+                a[j][j] = roots.getSecond();
+                reciprocals[j] = ajj_inverse;
+                for (int i = j + 1; i < a.length; i++) {
+                    a[i][j] = par.realNumeric().mult(a[i][j], ajj_inverse);
+                }
+                return () -> a;
+            }).par((par, scaled) -> {
+                for (int k = j + 1; k < end; k++) {
+                    DRes<SReal> akj = a[k][j];
+                    for (int i = k; i < a.length; i++) {
+                        DRes<SReal> aik = a[i][k];
+                        DRes<SReal> aij = a[i][j];
+                        a[i][k] = par.seq(seq -> seq.realNumeric().sub(aik, seq.realNumeric().mult(aij, akj)));
+                    }
+                }
+                return () -> new IterationState(a, reciprocals, j + 1);
+            });
         }
     }
 
@@ -97,7 +97,7 @@ class DPNoiseGenerator implements Computation<Vector<DRes<SReal>>, ProtocolBuild
     public DRes<Vector<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
         double scale = 2.0 / (numberOfInputs * epsilon.doubleValue() * lambda.doubleValue());
 
-        log(builder, "Generating noise with epsilon " + epsilon
+        log(builder, () -> "Generating noise with epsilon " + epsilon
             + ", lambda " + lambda
             + ", shape " + numVars
             + ", scale " + scale);
@@ -114,8 +114,8 @@ class DPNoiseGenerator implements Computation<Vector<DRes<SReal>>, ProtocolBuild
         }).seq((seq, noise) -> {
 
             DRes<SReal> sumOfSquares = seq.realAdvanced().innerProduct(noise.getSecond(), noise.getSecond());
-            DRes<SReal> norm = seq.realAdvanced().sqrt(sumOfSquares);
-            DRes<SReal> normInverse = seq.realAdvanced().reciprocal(norm);
+            DRes<Pair<DRes<SReal>, DRes<SReal>>> roots = seq.seq(new ReciprocalSquareRoot(sumOfSquares));
+            DRes<SReal> normInverse = () -> roots.out().getFirst().out();
             DRes<SReal> noiseLenDividedByNorm = seq.realNumeric().mult(noise.getFirst(), normInverse);
 
             return Pair.lazy(noise.getSecond(), noiseLenDividedByNorm);
@@ -0,0 +1,114 @@
+package com.philips.research.regression.primitives;
+
+import com.philips.research.regression.util.DataSet;
+
+import java.math.BigDecimal;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.philips.research.regression.util.DoubleKernels.axpy;
+import static com.philips.research.regression.util.DoubleKernels.dot;
+import static com.philips.research.regression.util.DoubleKernels.sum;
+import static java.lang.Math.min;
+
+/**
+ * Computes the local gradient in a single pass over the rows, using doubles.
+ * Rows are processed in blocks: for each block the residuals y - likelihood
+ * are computed once, column by column, after which they are multiplied with
+ * every column to update all components of the gradient together.
+ *
+ * Blocks are spread over the threads of a fork/join pool. The partial
+ * gradients are combined along a tree that only depends on the number of
+ * rows, so the result is the same for every run and every number of threads.
+ */
+class DoubleLocalGradient implements LocalGradient {
+    static final int BLOCK_SIZE = 1024;
+
+    private final DataSet data;
+    private final ForkJoinPool pool;
+
+    DoubleLocalGradient(DataSet data, ForkJoinPool pool) {
+        this.data = data;
+        this.pool = pool;
+    }
+
+    @Override
+    public Vector<BigDecimal> compute(Vector<BigDecimal> beta) {
+        if (beta.size() != data.getWidth()) {
+            throw new IllegalArgumentException(
+                "Expected " + data.getWidth() + " coefficients, but got " + beta.size());
+        }
+        double[] b = new double[beta.size()];
+        for (int k = 0; k < b.length; k++) {
+            b[k] = beta.get(k).doubleValue();
+        }
+
+        int blocks = (data.getHeight() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        double[] gradient = blocks == 0
+            ? new double[b.length]
+            : pool.invoke(new Partition(b, 0, blocks));
+
+        Vector<BigDecimal> result = new Vector<>(gradient.length);
+        for (double component : gradient) {
+            result.add(BigDecimal.valueOf(component));
+        }
+        return result;
+    }
+
+    private class Partition extends RecursiveTask<double[]> {
+        private final double[] beta;
+        private final int fromBlock;
+        private final int toBlock;
+
+        Partition(double[] beta, int fromBlock, int toBlock) {
+            this.beta = beta;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (toBlock - fromBlock == 1) {
+                int start = fromBlock * BLOCK_SIZE;
+                return accumulate(beta, start, min(start + BLOCK_SIZE, data.getHeight()));
+            }
+            int middle = (fromBlock + toBlock) >>> 1;
+            Partition left = new Partition(beta, fromBlock, middle);
+            left.fork();
+            double[] right = new Partition(beta, middle, toBlock).compute();
+            double[] result = left.join();
+            for (int k = 0; k < result.length; k++) {
+                result[k] += right[k];
+            }
+            return result;
+        }
+    }
+
+    private double[] accumulate(double[] beta, int start, int end) {
+        int length = end - start;
+        double[] residuals = new double[length];
+        for (int k = 0; k < beta.length; k++) {
+            if (data.isIntercept(k)) {
+                for (int i = 0; i < length; i++) {
+                    residuals[i] += beta[k];
+                }
+            } else {
+                axpy(beta[k], data.getColumn(k), start, residuals, length);
+            }
+        }
+
+        double[] outcomes = data.getOutcomes();
+        for (int i = 0; i < length; i++) {
+            residuals[i] = outcomes[start + i] - 1.0 / (1.0 + Math.exp(-residuals[i]));
+        }
+
+        double[] gradient = new double[beta.length];
+        for (int k = 0; k < beta.length; k++) {
+            gradient[k] = data.isIntercept(k)
+                ? sum(residuals, 0, length)
+                : dot(residuals, 0, data.getColumn(k), start, length);
+        }
+        return gradient;
+    }
+}
@@ -0,0 +1,65 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+
+import java.util.List;
+
+import static com.philips.research.regression.util.MatrixConversions.transpose;
+
+/**
+ * A Cholesky factor L together with its transpose and the reciprocals of
+ * its diagonal. The factor does not change while a model is fitted, so
+ * these are computed once and reused by every iteration.
+ */
+public class Factorization {
+    private final Matrix<DRes<SReal>> L;
+    private final Matrix<DRes<SReal>> LTransposed;
+    private final List<DRes<SReal>> diagonalReciprocals;
+    private final Matrix<DRes<SReal>> LInverse;
+
+    /**
+     * @param diagonalReciprocals the reciprocals of the diagonal of L, or null
+     *                            when they are not known
+     */
+    public Factorization(Matrix<DRes<SReal>> L, List<DRes<SReal>> diagonalReciprocals) {
+        this(L, diagonalReciprocals, null);
+    }
+
+    private Factorization(Matrix<DRes<SReal>> L, List<DRes<SReal>> diagonalReciprocals,
+                          Matrix<DRes<SReal>> LInverse) {
+        this.L = L;
+        this.LTransposed = transpose(L);
+        this.diagonalReciprocals = diagonalReciprocals;
+        this.LInverse = LInverse;
+    }
+
+    /**
+     * Returns a copy of this factorization that also holds the inverse of L,
+     * which allows systems of equations to be solved with matrix-vector
+     * products instead of substitutions.
+     */
+    public Factorization withInverse(Matrix<DRes<SReal>> LInverse) {
+        return new Factorization(L, diagonalReciprocals, LInverse);
+    }
+
+    public Matrix<DRes<SReal>> getL() {
+        return L;
+    }
+
+    public Matrix<DRes<SReal>> getLTransposed() {
+        return LTransposed;
+    }
+
+    public List<DRes<SReal>> getDiagonalReciprocals() {
+        return diagonalReciprocals;
+    }
+
+    /**
+     * @return the inverse of L, or null when it has not been computed
+     */
+    public Matrix<DRes<SReal>> getLInverse() {
+        return LInverse;
+    }
+}
@@ -8,15 +8,27 @@ import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.lib.real.SReal;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
 
 class ForwardSubstitution implements Computation<Vector<DRes<SReal>>, ProtocolBuilderNumeric> {
     private final DRes<Matrix<DRes<SReal>>> matrix;
     private final DRes<Vector<DRes<SReal>>> vector;
+    private final List<DRes<SReal>> diagonalReciprocals;
 
     ForwardSubstitution(DRes<Matrix<DRes<SReal>>> matrix, DRes<Vector<DRes<SReal>>> vector) {
+        this(matrix, vector, null);
+    }
+
+    /**
+     * @param diagonalReciprocals the reciprocals of the diagonal of the matrix; when null, they are
+     *                            computed as part of the substitution
+     */
+    ForwardSubstitution(DRes<Matrix<DRes<SReal>>> matrix, DRes<Vector<DRes<SReal>>> vector,
+                        List<DRes<SReal>> diagonalReciprocals) {
         this.matrix = matrix;
         this.vector = vector;
+        this.diagonalReciprocals = diagonalReciprocals;
     }
 
     @Override
@@ -31,18 +43,24 @@ class ForwardSubstitution implements Computation<Vector<DRes<SReal>>, ProtocolBu
         );
     }
 
-    private static DRes<SReal>[] computeForwardSubstitution(ProtocolBuilderNumeric seq, Matrix<DRes<SReal>> l, Vector<DRes<SReal>> b) {
+    private DRes<SReal>[] computeForwardSubstitution(ProtocolBuilderNumeric seq, Matrix<DRes<SReal>> l, Vector<DRes<SReal>> b) {
         int n = b.size();
         DRes<SReal>[] y = newArray(n);
 
         for (int i = 0; i < n; ++i) {
             y[i] = b.get(i);
-            for (int j = 0; j < i; ++j) {
-                y[i] = seq.realNumeric().sub(y[i], seq.realNumeric().mult(l.getRow(i).get(j), y[j]));
+            if (i > 0) {
+                List<DRes<SReal>> solved = Arrays.asList(y).subList(0, i);
+                y[i] = seq.realNumeric().sub(y[i], seq.realAdvanced().innerProduct(l.getRow(i).subList(0, i), solved));
             }
-            y[i] = seq.realNumeric().mult(y[i], seq.realAdvanced().reciprocal(l.getRow(i).get(i)));
-            //y[i] = seq.realNumeric().div(y[i], l.getRow(i).get(i));
+            y[i] = seq.realNumeric().mult(y[i], reciprocal(seq, l, i));
         }
         return y;
     }
+
+    private DRes<SReal> reciprocal(ProtocolBuilderNumeric seq, Matrix<DRes<SReal>> matrix, int i) {
+        return diagonalReciprocals != null
+            ? diagonalReciprocals.get(i)
+            : seq.realAdvanced().reciprocal(matrix.getRow(i).get(i));
+    }
 }
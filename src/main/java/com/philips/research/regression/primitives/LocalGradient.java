@@ -0,0 +1,40 @@
+package com.philips.research.regression.primitives;
+
+import com.philips.research.regression.util.DataSet;
+import dk.alexandra.fresco.lib.collections.Matrix;
+
+import java.math.BigDecimal;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes the first derivative of the log likelihood over the data of a
+ * single party, in the clear.
+ */
+public interface LocalGradient {
+    Vector<BigDecimal> compute(Vector<BigDecimal> beta);
+
+    static LocalGradient of(DataSet data) {
+        return of(data, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Spreads the computation over the threads of the given pool; results do
+     * not depend on the number of threads.
+     */
+    static LocalGradient of(DataSet data, ForkJoinPool pool) {
+        return new DoubleLocalGradient(data, pool);
+    }
+
+    /**
+     * Slow reference implementation that computes everything using
+     * BigDecimals; intended for validating the results of the default one.
+     */
+    static LocalGradient reference(DataSet data) {
+        return reference(data.toMatrix(), data.outcomesAsVector());
+    }
+
+    static LocalGradient reference(Matrix<BigDecimal> x, Vector<BigDecimal> y) {
+        return beta -> new LocalLogLikelihoodPrime(x, y, beta).compute();
+    }
+}
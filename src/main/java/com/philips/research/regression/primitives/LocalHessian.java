@@ -0,0 +1,82 @@
+package com.philips.research.regression.primitives;
+
+import com.philips.research.regression.util.DataSet;
+import dk.alexandra.fresco.lib.collections.Matrix;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.philips.research.regression.util.DoubleKernels.dot;
+import static com.philips.research.regression.util.DoubleKernels.sum;
+import static java.math.BigDecimal.valueOf;
+
+/**
+ * Computes the contribution of a single party to the approximation of the
+ * Hessian matrix, -0.25 * X^T * X, in the clear. Since that approximation is
+ * a sum over all rows, the contributions of all parties add up to the Hessian
+ * of the combined data, which is what {@link Hessian} computes securely.
+ */
+public class LocalHessian {
+    private final DataSet data;
+    private final ForkJoinPool pool;
+
+    public LocalHessian(DataSet data, ForkJoinPool pool) {
+        this.data = data;
+        this.pool = pool;
+    }
+
+    public Matrix<BigDecimal> compute() {
+        int width = data.getWidth();
+        double[][] hessian = new double[width][width];
+        pool.invoke(new Rows(hessian, 0, width));
+        return new Matrix<>(width, width, row -> {
+            ArrayList<BigDecimal> elements = new ArrayList<>(width);
+            for (int column = 0; column < width; column++) {
+                elements.add(valueOf(hessian[row][column]));
+            }
+            return elements;
+        });
+    }
+
+    private double entry(int row, int column) {
+        int height = data.getHeight();
+        double product;
+        if (data.isIntercept(row) && data.isIntercept(column)) {
+            product = height;
+        } else if (data.isIntercept(row)) {
+            product = sum(data.getColumn(column), 0, height);
+        } else if (data.isIntercept(column)) {
+            product = sum(data.getColumn(row), 0, height);
+        } else {
+            product = dot(data.getColumn(row), 0, data.getColumn(column), 0, height);
+        }
+        return -0.25 * product;
+    }
+
+    private class Rows extends RecursiveAction {
+        private final double[][] hessian;
+        private final int from;
+        private final int to;
+
+        Rows(double[][] hessian, int from, int to) {
+            this.hessian = hessian;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                for (int column = 0; column <= from; column++) {
+                    hessian[from][column] = entry(from, column);
+                    hessian[column][from] = hessian[from][column];
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Rows(hessian, from, middle), new Rows(hessian, middle, to));
+            }
+        }
+    }
+}
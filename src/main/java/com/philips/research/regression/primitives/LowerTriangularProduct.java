@@ -0,0 +1,45 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.ComputationParallel;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Multiplies a lower triangular matrix, or its transpose, with a vector.
+ * Every element of the result is a single inner product that skips the
+ * zeros of the matrix, so the product takes a constant number of rounds.
+ */
+class LowerTriangularProduct implements ComputationParallel<Vector<DRes<SReal>>, ProtocolBuilderNumeric> {
+    private final DRes<Matrix<DRes<SReal>>> matrix;
+    private final DRes<Vector<DRes<SReal>>> vector;
+    private final boolean transposed;
+
+    LowerTriangularProduct(DRes<Matrix<DRes<SReal>>> matrix, DRes<Vector<DRes<SReal>>> vector, boolean transposed) {
+        this.matrix = matrix;
+        this.vector = vector;
+        this.transposed = transposed;
+    }
+
+    @Override
+    public DRes<Vector<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+        Matrix<DRes<SReal>> L = matrix.out();
+        Vector<DRes<SReal>> v = vector.out();
+        int n = v.size();
+        Vector<DRes<SReal>> result = new Vector<>(n);
+        for (int i = 0; i < n; i++) {
+            List<DRes<SReal>> elements = transposed
+                ? L.getColumn(i).subList(i, n)
+                : L.getRow(i).subList(0, i + 1);
+            List<DRes<SReal>> operands = transposed
+                ? v.subList(i, n)
+                : v.subList(0, i + 1);
+            result.add(builder.realAdvanced().innerProduct(elements, operands));
+        }
+        return () -> result;
+    }
+}
@@ -0,0 +1,146 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.framework.value.SInt;
+import dk.alexandra.fresco.lib.real.RealNumeric;
+import dk.alexandra.fresco.lib.real.SReal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.math.BigDecimal.valueOf;
+
+/**
+ * Computes both 1/sqrt(x) and sqrt(x) of a positive value x with a single
+ * schedule of Newton iterations, instead of a square root followed by a
+ * reciprocal.
+ * <p>
+ * First x is reduced to x' = x / 4^k in [1, 4), by comparing x with all
+ * powers of 4 in range at once. Newton's iteration y = y (3/2 - x'/2 y^2)
+ * then converges to 1/sqrt(x') from a linear initial guess, without any
+ * division. Finally 1/sqrt(x) = y / 2^k and sqrt(x) = x' y 2^k. Working on
+ * x' keeps y^2 within the fixed point precision, also for the large values
+ * of x found on the diagonal of the Hessian of a large data set.
+ */
+public class ReciprocalSquareRoot implements Computation<Pair<DRes<SReal>, DRes<SReal>>, ProtocolBuilderNumeric> {
+    /**
+     * Values below 4^MIN_EXPONENT are treated as if they were in [4^MIN_EXPONENT, 4^(MIN_EXPONENT+1)),
+     * values from 4^(MAX_EXPONENT+1) on as if they were in [4^MAX_EXPONENT, 4^(MAX_EXPONENT+1)).
+     */
+    static final int MIN_EXPONENT = -8;
+    static final int MAX_EXPONENT = 23;
+    /**
+     * The initial guess is within 9% of 1/sqrt(x') on [1, 4], and every
+     * iteration about squares the relative error.
+     */
+    static final int ITERATIONS = 3;
+    private static final BigDecimal GUESS_INTERCEPT = valueOf(1.06);
+    private static final BigDecimal GUESS_SLOPE = valueOf(-0.15);
+    private static final BigDecimal HALF = valueOf(0.5);
+    private static final BigDecimal THREE_HALVES = valueOf(1.5);
+
+    private final DRes<SReal> x;
+
+    public ReciprocalSquareRoot(DRes<SReal> x) {
+        this.x = x;
+    }
+
+    /**
+     * @return a pair of 1/sqrt(x) and sqrt(x)
+     */
+    @Override
+    public DRes<Pair<DRes<SReal>, DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+        return builder.par(par -> {
+            List<DRes<SInt>> atLeast = new ArrayList<>();
+            for (int k = MIN_EXPONENT + 1; k <= MAX_EXPONENT; k++) {
+                atLeast.add(par.realNumeric().leq(par.realNumeric().known(power(4, k)), x));
+            }
+            return () -> atLeast;
+        }).par((par, atLeast) -> {
+            List<DRes<SReal>> reduced = new ArrayList<>();
+            List<DRes<SReal>> down = new ArrayList<>();
+            List<DRes<SReal>> up = new ArrayList<>();
+            for (int k = MIN_EXPONENT; k <= MAX_EXPONENT; k++) {
+                DRes<SReal> inRange = par.realNumeric().fromSInt(inRange(par, atLeast, k));
+                BigDecimal scale = power(4, -k);
+                reduced.add(par.seq(seq -> seq.realNumeric().mult(inRange, seq.realNumeric().mult(scale, x))));
+                down.add(par.realNumeric().mult(power(2, -k), inRange));
+                up.add(par.realNumeric().mult(power(2, k), inRange));
+            }
+            return () -> new Scaled(reduced, down, up);
+        }).seq((seq, scaled) -> {
+            RealNumeric r = seq.realNumeric();
+            DRes<SReal> reduced = sum(r, scaled.reduced);
+            DRes<SReal> halfReduced = r.mult(HALF, reduced);
+            DRes<SReal> y = r.add(GUESS_INTERCEPT, r.mult(GUESS_SLOPE, reduced));
+            for (int i = 0; i < ITERATIONS; i++) {
+                DRes<SReal> step = r.sub(THREE_HALVES, r.mult(halfReduced, r.mult(y, y)));
+                y = r.mult(y, step);
+            }
+            DRes<SReal> inverseRoot = y;
+            DRes<SReal> down = sum(r, scaled.down);
+            DRes<SReal> up = sum(r, scaled.up);
+            return () -> new Reduced(reduced, inverseRoot, down, up);
+        }).par((par, reduced) -> {
+            DRes<SReal> reciprocal = par.realNumeric().mult(reduced.inverseRoot, reduced.down);
+            DRes<SReal> root = par.seq(seq -> seq.realNumeric().mult(
+                seq.realNumeric().mult(reduced.value, reduced.inverseRoot), reduced.up));
+            return () -> new Pair<>(reciprocal, root);
+        });
+    }
+
+    private static DRes<SInt> inRange(ProtocolBuilderNumeric builder, List<DRes<SInt>> atLeast, int k) {
+        int index = k - MIN_EXPONENT - 1;
+        DRes<SInt> lower = k == MIN_EXPONENT ? builder.numeric().known(BigInteger.ONE) : atLeast.get(index);
+        return k == MAX_EXPONENT ? lower : builder.numeric().sub(lower, atLeast.get(index + 1));
+    }
+
+    private static DRes<SReal> sum(RealNumeric r, List<DRes<SReal>> terms) {
+        DRes<SReal> sum = terms.get(0);
+        for (DRes<SReal> term : terms.subList(1, terms.size())) {
+            sum = r.add(sum, term);
+        }
+        return sum;
+    }
+
+    private static BigDecimal power(int base, int exponent) {
+        return new BigDecimal(Math.pow(base, exponent));
+    }
+
+    /**
+     * The terms of x', 1/2^k and 2^k, of which only those of the range of x are non-zero.
+     */
+    private static class Scaled {
+        final List<DRes<SReal>> reduced;
+        final List<DRes<SReal>> down;
+        final List<DRes<SReal>> up;
+
+        Scaled(List<DRes<SReal>> reduced, List<DRes<SReal>> down, List<DRes<SReal>> up) {
+            this.reduced = reduced;
+            this.down = down;
+            this.up = up;
+        }
+    }
+
+    /**
+     * x' with 1/sqrt(x'), and the factors that undo the reduction.
+     */
+    private static class Reduced {
+        final DRes<SReal> value;
+        final DRes<SReal> inverseRoot;
+        final DRes<SReal> down;
+        final DRes<SReal> up;
+
+        Reduced(DRes<SReal> value, DRes<SReal> inverseRoot, DRes<SReal> down, DRes<SReal> up) {
+            this.value = value;
+            this.inverseRoot = inverseRoot;
+            this.down = down;
+            this.up = up;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.philips.research.regression.util.GenericArrayCreation.newArray;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * Inverts a lower triangular matrix by recursively splitting it into blocks:
+ *
+ * <pre>
+ *   | A 0 |^-1   |  A^-1            0    |
+ *   | C B |    = | -B^-1 * C * A^-1  B^-1 |
+ * </pre>
+ *
+ * The inverses of A and B are computed in parallel, so the depth of the
+ * computation grows logarithmically with the size of the matrix. The
+ * leaves of the recursion are the reciprocals of the diagonal, which are
+ * taken from the factorization when available.
+ */
+public class TriangularInverse implements Computation<Matrix<DRes<SReal>>, ProtocolBuilderNumeric> {
+    private final DRes<Matrix<DRes<SReal>>> matrix;
+    private final List<DRes<SReal>> diagonalReciprocals;
+
+    public TriangularInverse(DRes<Matrix<DRes<SReal>>> matrix) {
+        this(matrix, null);
+    }
+
+    /**
+     * @param diagonalReciprocals the reciprocals of the diagonal of the matrix; when null, they are
+     *                            computed as part of the inversion
+     */
+    public TriangularInverse(DRes<Matrix<DRes<SReal>>> matrix, List<DRes<SReal>> diagonalReciprocals) {
+        this.matrix = matrix;
+        this.diagonalReciprocals = diagonalReciprocals;
+    }
+
+    @Override
+    public DRes<Matrix<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
+        return builder.par(par -> {
+            Matrix<DRes<SReal>> L = matrix.out();
+            if (diagonalReciprocals != null) {
+                return () -> diagonalReciprocals;
+            }
+            List<DRes<SReal>> reciprocals = new ArrayList<>();
+            for (int i = 0; i < L.getHeight(); i++) {
+                reciprocals.add(par.realAdvanced().reciprocal(L.getRow(i).get(i)));
+            }
+            return () -> reciprocals;
+        }).seq((seq, reciprocals) -> {
+            Matrix<DRes<SReal>> L = matrix.out();
+            return seq.seq(new InvertBlock(L, reciprocals, 0, L.getHeight()));
+        }).seq((seq, inverse) -> {
+            DRes<SReal> zero = seq.realNumeric().known(ZERO);
+            int size = inverse.length;
+            return () -> new Matrix<>(size, size, row -> {
+                ArrayList<DRes<SReal>> elements = new ArrayList<>(size);
+                for (int column = 0; column < size; column++) {
+                    elements.add(column <= row ? inverse[row][column] : zero);
+                }
+                return elements;
+            });
+        });
+    }
+
+    /**
+     * Inverts the diagonal block of rows and columns from up to to. Only the
+     * lower triangle of the result is filled in.
+     */
+    private static class InvertBlock implements Computation<DRes<SReal>[][], ProtocolBuilderNumeric> {
+        private final Matrix<DRes<SReal>> L;
+        private final List<DRes<SReal>> reciprocals;
+        private final int from;
+        private final int to;
+
+        InvertBlock(Matrix<DRes<SReal>> L, List<DRes<SReal>> reciprocals, int from, int to) {
+            this.L = L;
+            this.reciprocals = reciprocals;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public DRes<DRes<SReal>[][]> buildComputation(ProtocolBuilderNumeric builder) {
+            if (to - from == 1) {
+                DRes<SReal>[][] inverse = newArray(1);
+                inverse[0] = newArray(1);
+                inverse[0][0] = reciprocals.get(from);
+                return () -> inverse;
+            }
+            int middle = (from + to) >>> 1;
+            return builder.par(par -> {
+                DRes<DRes<SReal>[][]> A = par.seq(new InvertBlock(L, reciprocals, from, middle));
+                DRes<DRes<SReal>[][]> B = par.seq(new InvertBlock(L, reciprocals, middle, to));
+                return () -> new Blocks(A.out(), B.out(), null);
+            }).par((par, blocks) -> {
+                // C * A^-1, where A^-1 is lower triangular
+                int height = to - middle;
+                int width = middle - from;
+                DRes<SReal>[][] CA = newArray(height);
+                for (int i = 0; i < height; i++) {
+                    CA[i] = newArray(width);
+                    List<DRes<SReal>> rowOfC = L.getRow(middle + i).subList(from, middle);
+                    for (int k = 0; k < width; k++) {
+                        CA[i][k] = par.realAdvanced().innerProduct(
+                            rowOfC.subList(k, width), column(blocks.A, k, k, width));
+                    }
+                }
+                return () -> new Blocks(blocks.A, blocks.B, CA);
+            }).par((par, blocks) -> {
+                // -B^-1 * (C * A^-1), where B^-1 is lower triangular
+                int size = to - from;
+                int height = to - middle;
+                int width = middle - from;
+                DRes<SReal>[][] inverse = newArray(size);
+                for (int i = 0; i < width; i++) {
+                    inverse[i] = Arrays.copyOf(blocks.A[i], size);
+                }
+                for (int i = 0; i < height; i++) {
+                    inverse[width + i] = newArray(size);
+                    List<DRes<SReal>> rowOfB = Arrays.asList(blocks.B[i]).subList(0, i + 1);
+                    for (int k = 0; k < width; k++) {
+                        List<DRes<SReal>> columnOfCA = column(blocks.CA, k, 0, i + 1);
+                        inverse[width + i][k] = par.seq(seq -> seq.realNumeric().sub(ZERO,
+                            seq.realAdvanced().innerProduct(rowOfB, columnOfCA)));
+                    }
+                    System.arraycopy(blocks.B[i], 0, inverse[width + i], width, i + 1);
+                }
+                return () -> inverse;
+            });
+        }
+
+        private static List<DRes<SReal>> column(DRes<SReal>[][] matrix, int column, int from, int to) {
+            List<DRes<SReal>> elements = new ArrayList<>(to - from);
+            for (int row = from; row < to; row++) {
+                elements.add(matrix[row][column]);
+            }
+            return elements;
+        }
+    }
+
+    private static class Blocks {
+        final DRes<SReal>[][] A;
+        final DRes<SReal>[][] B;
+        final DRes<SReal>[][] CA;
+
+        Blocks(DRes<SReal>[][] A, DRes<SReal>[][] B, DRes<SReal>[][] CA) {
+            this.A = A;
+            this.B = B;
+            this.CA = CA;
+        }
+    }
+}
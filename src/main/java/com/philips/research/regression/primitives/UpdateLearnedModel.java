@@ -5,29 +5,29 @@ import static java.math.BigDecimal.valueOf;
 import static java.math.RoundingMode.HALF_UP;
 
 import com.philips.research.regression.logging.LoggingNoiseGenerator;
+import com.philips.research.regression.logging.Phases;
 import com.philips.research.regression.util.AddVectors;
 import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.builder.Computation;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
-import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.lib.real.SReal;
 import java.math.BigDecimal;
 import java.util.Vector;
 
 public class UpdateLearnedModel implements Computation<Vector<DRes<SReal>>, ProtocolBuilderNumeric> {
-    private final DRes<Matrix<DRes<SReal>>> L;
+    private final DRes<Factorization> factorization;
     private final DRes<Vector<DRes<SReal>>> beta;
     private final DRes<Vector<DRes<SReal>>> l;
     private final NoiseFactory noiseFactory;
 
-    public UpdateLearnedModel(DRes<Matrix<DRes<SReal>>> L,
+    public UpdateLearnedModel(DRes<Factorization> factorization,
                               DRes<Vector<DRes<SReal>>> beta,
                               DRes<Vector<DRes<SReal>>> l,
                               BigDecimal epsilon,
                               BigDecimal lambda,
                               int numParties,
                               int numberOfInputs) {
-        this.L = L;
+        this.factorization = factorization;
         this.beta = beta;
         this.l = l;
         this.noiseFactory = epsilon != null
@@ -35,9 +35,9 @@ public class UpdateLearnedModel implements Computation<Vector<DRes<SReal>>, Prot
             : null;
     }
 
-    UpdateLearnedModel(DRes<Matrix<DRes<SReal>>> L, DRes<Vector<DRes<SReal>>> beta, DRes<Vector<DRes<SReal>>> l,
+    UpdateLearnedModel(DRes<Factorization> factorization, DRes<Vector<DRes<SReal>>> beta, DRes<Vector<DRes<SReal>>> l,
                        NoiseFactory noiseFactory) {
-        this.L = L;
+        this.factorization = factorization;
         this.beta = beta;
         this.l = l;
         this.noiseFactory = noiseFactory;
@@ -46,13 +46,22 @@ public class UpdateLearnedModel implements Computation<Vector<DRes<SReal>>, Prot
     @Override
     public DRes<Vector<DRes<SReal>>> buildComputation(ProtocolBuilderNumeric builder) {
         return builder.seq(seq -> {
-            log(seq, "Forward Substitution");
-            DRes<Vector<DRes<SReal>>> y = seq.seq(new ForwardSubstitution(L, l));
-            DRes<Matrix<DRes<SReal>>> LTransposed = builder.realLinAlg().transpose(L);
-            log(seq, "Back Substitution");
-            DRes<Vector<DRes<SReal>>> r = seq.seq(new BackSubstitution(LTransposed, y));
+            Factorization factors = factorization.out();
+            DRes<Vector<DRes<SReal>>> r;
+            if (factors.getLInverse() != null) {
+                log(seq, "Multiply with inverse");
+                DRes<Vector<DRes<SReal>>> y = seq.par(new LowerTriangularProduct(factors::getLInverse, l, false));
+                r = seq.par(new LowerTriangularProduct(factors::getLInverse, y, true));
+            } else {
+                log(seq, "Forward Substitution");
+                DRes<Vector<DRes<SReal>>> y = seq.seq(
+                    new ForwardSubstitution(factors::getL, l, factors.getDiagonalReciprocals()));
+                log(seq, "Back Substitution");
+                r = seq.seq(new BackSubstitution(factors::getLTransposed, y, factors.getDiagonalReciprocals()));
+            }
             DRes<Vector<DRes<SReal>>> updatedBeta = seq.par(new AddVectors(beta, r));
             if (this.noiseFactory != null) {
+                Phases.start(seq, "noise");
                 log(seq, "Adding noise");
                 DRes<Vector<DRes<SReal>>> noise = seq.seq(new LoggingNoiseGenerator(noiseFactory.createNoiseGenerator(updatedBeta)));
                 updatedBeta = seq.par(new AddVectors(updatedBeta, noise));
@@ -0,0 +1,135 @@
+package com.philips.research.regression.util;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Vector;
+
+import static java.math.BigDecimal.valueOf;
+
+/**
+ * Predictors and outcomes of a single party, stored column by column in
+ * primitive arrays. The last column is a virtual intercept column that
+ * always contains 1 and takes up no storage.
+ */
+public class DataSet {
+    private final double[][] columns;
+    private final double[] outcomes;
+
+    private DataSet(double[][] columns, double[] outcomes) {
+        this.columns = columns;
+        this.outcomes = outcomes;
+    }
+
+    public int getHeight() {
+        return outcomes.length;
+    }
+
+    /**
+     * Number of columns, including the intercept column.
+     */
+    public int getWidth() {
+        return columns.length + 1;
+    }
+
+    public boolean isIntercept(int column) {
+        return column == columns.length;
+    }
+
+    public double get(int row, int column) {
+        return isIntercept(column) ? 1.0 : columns[column][row];
+    }
+
+    /**
+     * Returns the backing array of a predictor column; must not be called for
+     * the intercept column.
+     */
+    public double[] getColumn(int column) {
+        return columns[column];
+    }
+
+    public double getOutcome(int row) {
+        return outcomes[row];
+    }
+
+    public double[] getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * Converts the predictors, including the intercept column, to a matrix.
+     */
+    public Matrix<BigDecimal> toMatrix() {
+        int width = getWidth();
+        return new Matrix<>(getHeight(), width, row -> {
+            ArrayList<BigDecimal> elements = new ArrayList<>(width);
+            for (int column = 0; column < width; column++) {
+                elements.add(valueOf(get(row, column)));
+            }
+            return elements;
+        });
+    }
+
+    public Vector<BigDecimal> outcomesAsVector() {
+        Vector<BigDecimal> vector = new Vector<>(outcomes.length);
+        for (double outcome : outcomes) {
+            vector.add(valueOf(outcome));
+        }
+        return vector;
+    }
+
+    /**
+     * Collects predictors and outcomes one row at a time. Predictors and
+     * outcomes may be added independently of each other, as long as their
+     * counts match when the data set is built.
+     */
+    public static class Builder {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private double[][] columns;
+        private double[] outcomes = new double[INITIAL_CAPACITY];
+        private int rows;
+        private int outcomeCount;
+
+        public void addPredictors(double[] row) {
+            if (columns == null) {
+                columns = new double[row.length][INITIAL_CAPACITY];
+            }
+            if (row.length != columns.length) {
+                throw new IllegalArgumentException(
+                    "Row " + rows + " has " + row.length + " predictors, expected " + columns.length);
+            }
+            if (columns.length > 0 && rows == columns[0].length) {
+                for (int column = 0; column < columns.length; column++) {
+                    columns[column] = Arrays.copyOf(columns[column], 2 * rows);
+                }
+            }
+            for (int column = 0; column < columns.length; column++) {
+                columns[column][rows] = row[column];
+            }
+            rows++;
+        }
+
+        public void addOutcome(double outcome) {
+            if (outcomeCount == outcomes.length) {
+                outcomes = Arrays.copyOf(outcomes, 2 * outcomeCount);
+            }
+            outcomes[outcomeCount++] = outcome;
+        }
+
+        public DataSet build() {
+            if (rows != outcomeCount) {
+                throw new IllegalArgumentException(
+                    "Found " + rows + " rows of predictors, but " + outcomeCount + " outcomes");
+            }
+            double[][] trimmed = new double[columns == null ? 0 : columns.length][];
+            for (int column = 0; column < trimmed.length; column++) {
+                trimmed[column] = Arrays.copyOf(columns[column], rows);
+                columns[column] = null;
+            }
+            return new DataSet(trimmed, Arrays.copyOf(outcomes, outcomeCount));
+        }
+    }
+}
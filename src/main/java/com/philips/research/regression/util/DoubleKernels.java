@@ -0,0 +1,48 @@
+package com.philips.research.regression.util;
+
+/**
+ * Loops over primitive arrays, written so that the JIT compiler can unroll
+ * and vectorize them. Each reduction uses four independent accumulators that
+ * are combined in a fixed order, so results only depend on the input.
+ */
+public class DoubleKernels {
+
+    public static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static double sum(double[] a, int offset, int length) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[offset + i];
+            s1 += a[offset + i + 1];
+            s2 += a[offset + i + 2];
+            s3 += a[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Computes y[i] += factor * x[offset + i] for the first length elements of y.
+     */
+    public static void axpy(double factor, double[] x, int offset, double[] y, int length) {
+        for (int i = 0; i < length; i++) {
+            y[i] += factor * x[offset + i];
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.philips.research.regression.util;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+
+import java.util.List;
+
+public class SumMatrices extends TreeSum<Matrix<DRes<SReal>>> {
+
+    public SumMatrices(List<DRes<Matrix<DRes<SReal>>>> terms) {
+        super(terms);
+    }
+
+    DRes<Matrix<DRes<SReal>>> add(ProtocolBuilderNumeric builder, DRes<Matrix<DRes<SReal>>> left,
+                                  DRes<Matrix<DRes<SReal>>> right) {
+        return builder.realLinAlg().add(left, right);
+    }
+}
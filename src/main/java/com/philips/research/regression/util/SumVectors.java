@@ -0,0 +1,20 @@
+package com.philips.research.regression.util;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.lib.real.SReal;
+
+import java.util.List;
+import java.util.Vector;
+
+public class SumVectors extends TreeSum<Vector<DRes<SReal>>> {
+
+    public SumVectors(List<DRes<Vector<DRes<SReal>>>> terms) {
+        super(terms);
+    }
+
+    DRes<Vector<DRes<SReal>>> add(ProtocolBuilderNumeric builder, DRes<Vector<DRes<SReal>>> left,
+                                  DRes<Vector<DRes<SReal>>> right) {
+        return builder.par(new AddVectors(left, right));
+    }
+}
@@ -0,0 +1,41 @@
+package com.philips.research.regression.util;
+
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.Computation;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds up a list of terms pairwise, so that the depth of the computation
+ * grows logarithmically rather than linearly with the number of terms.
+ */
+abstract class TreeSum<T> implements Computation<T, ProtocolBuilderNumeric> {
+
+    private final List<DRes<T>> terms;
+
+    TreeSum(List<DRes<T>> terms) {
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Expected at least one term");
+        }
+        this.terms = terms;
+    }
+
+    @Override
+    public DRes<T> buildComputation(ProtocolBuilderNumeric builder) {
+        return builder.seq(seq -> () -> terms
+        ).whileLoop(level -> level.size() > 1, (seq, level) -> seq.par(par -> {
+            List<DRes<T>> next = new ArrayList<>();
+            for (int i = 0; i + 1 < level.size(); i += 2) {
+                next.add(add(par, level.get(i), level.get(i + 1)));
+            }
+            if (level.size() % 2 == 1) {
+                next.add(level.get(level.size() - 1));
+            }
+            return () -> next;
+        })).seq((seq, level) -> level.get(0));
+    }
+
+    abstract DRes<T> add(ProtocolBuilderNumeric builder, DRes<T> left, DRes<T> right);
+}
@@ -1,5 +1,7 @@
 package com.philips.research.regression.app;
 
+import com.philips.research.regression.util.DataSet;
+
 import java.math.BigDecimal;
 import java.util.Vector;
 
@@ -48,4 +50,27 @@ class CarDataSet {
         0.0, 1.0, 1.0, 1.0, 0.0, 0.0, 0.0, 0.0,
         0.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0
     }).map(BigDecimal::valueOf).collect(toCollection(Vector::new));
+
+    /**
+     * The coefficients of the model that is fitted to all cars with lambda 1.
+     */
+    static BigDecimal intercept = BigDecimal.valueOf(1.65707);
+    static BigDecimal beta_hp = BigDecimal.valueOf(0.00968555 / hp_scale);
+    static BigDecimal beta_wt = BigDecimal.valueOf(-1.17481 / wt_scale);
+
+    static DataSet dataSet(BigDecimal[] hp, BigDecimal[] wt, Vector<BigDecimal> am) {
+        return dataSet(hp, wt, am, 0, hp.length);
+    }
+
+    /**
+     * @return the cars from index {@code from} up to {@code to}, exclusive
+     */
+    static DataSet dataSet(BigDecimal[] hp, BigDecimal[] wt, Vector<BigDecimal> am, int from, int to) {
+        DataSet.Builder builder = new DataSet.Builder();
+        for (int i = from; i < to; i++) {
+            builder.addPredictors(new double[]{hp[i].doubleValue(), wt[i].doubleValue()});
+            builder.addOutcome(am.get(i).doubleValue());
+        }
+        return builder.build();
+    }
 }
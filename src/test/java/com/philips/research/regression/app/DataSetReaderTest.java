@@ -0,0 +1,57 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.util.DataSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Data set readers")
+class DataSetReaderTest {
+
+    @Test
+    @DisplayName("reads json with comments")
+    void readsJson() throws IOException {
+        String json = "{\n" +
+            "    // hp, mpg\n" +
+            "    predictors: [[0.1, 0.2], [0.3, 0.4], [0.5, 0.6]],\n" +
+            "    outcomes: [1.0, 0.0, 1.0]\n" +
+            "}";
+        DataSet data = new JsonDataSetReader().read(new StringReader(json));
+        assertData(data);
+    }
+
+    @Test
+    @DisplayName("reads csv with a header")
+    void readsCsv() throws IOException {
+        String csv = "hp,mpg,am\n" +
+            "0.1,0.2,1.0\n" +
+            "\n" +
+            "0.3, 0.4, 0.0\n" +
+            "0.5,0.6,1\n";
+        DataSet data = new CsvDataSetReader().read(new StringReader(csv));
+        assertData(data);
+    }
+
+    @Test
+    @DisplayName("expects as many outcomes as rows")
+    void expectsMatchingOutcomes() {
+        String json = "{ predictors: [[0.1], [0.2]], outcomes: [1.0] }";
+        assertThrows(IllegalArgumentException.class,
+            () -> new JsonDataSetReader().read(new StringReader(json)));
+    }
+
+    private static void assertData(DataSet data) {
+        assertEquals(3, data.getHeight());
+        assertEquals(3, data.getWidth());
+        assertArrayEquals(new double[]{0.1, 0.3, 0.5}, data.getColumn(0));
+        assertArrayEquals(new double[]{0.2, 0.4, 0.6}, data.getColumn(1));
+        assertEquals(1.0, data.get(1, 2));
+        assertArrayEquals(new double[]{1.0, 0.0, 1.0}, data.getOutcomes());
+    }
+}
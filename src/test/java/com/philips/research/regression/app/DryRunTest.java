@@ -0,0 +1,59 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.logging.PhaseTracer;
+import com.philips.research.regression.primitives.Cholesky;
+import com.philips.research.regression.primitives.LocalGradient;
+import com.philips.research.regression.primitives.LocalHessian;
+import com.philips.research.regression.util.DataSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static com.philips.research.regression.app.CarDataSet.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Dry run")
+class DryRunTest {
+
+    @Test
+    @DisplayName("counts the material of every phase")
+    void countsPhases() {
+        DataSet data = dataSet(hp1, wt1, am1);
+        LogisticRegression application = new LogisticRegression(1, data, LocalGradient.of(data),
+            new LocalHessian(data, ForkJoinPool.commonPool()), singletonList(1.0), 2, 0, 0,
+            Cholesky.DEFAULT_BLOCK_SIZE, Solver.AUTO, null, false);
+
+        DryRun dryRun = new DryRun(512, 200, 4096);
+        dryRun.run(application);
+        dryRun.shutdown();
+
+        List<PhaseTracer.Costs> phases = dryRun.getPhases();
+        assertEquals(asList("start", "input", "hessian", "cholesky", "iteration 0", "iteration 1", "output"),
+            phases.stream().map(PhaseTracer.Costs::getPhase).collect(Collectors.toList()));
+        PhaseTracer.Costs cholesky = phases.get(3);
+        PhaseTracer.Costs first = phases.get(4);
+        PhaseTracer.Costs second = phases.get(5);
+        assertTrue(cholesky.getTriples() > 0);
+        assertEquals(data.getWidth(), first.getInputMasks());
+        assertEquals(first.getTriples(), second.getTriples());
+        assertEquals(data.getWidth(), phases.get(6).getOpenings());
+        assertTrue(dryRun.suggestedMascotBatchSize() >= cholesky.getTriples());
+    }
+
+    @Test
+    @DisplayName("reads a Mascot batch size or 'auto'")
+    void convertsMascotBatchSize() {
+        DryRun.MascotBatchSizeConverter converter = new DryRun.MascotBatchSizeConverter();
+        assertEquals(DryRun.AUTO_MASCOT_BATCH_SIZE, (int) converter.convert("auto"));
+        assertEquals(512, (int) converter.convert("512"));
+        assertThrows(CommandLine.TypeConversionException.class, () -> converter.convert("0"));
+    }
+}
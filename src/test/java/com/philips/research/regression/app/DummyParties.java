@@ -0,0 +1,49 @@
+package com.philips.research.regression.app;
+
+import dk.alexandra.fresco.framework.Application;
+import dk.alexandra.fresco.framework.Party;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Runs applications with dummy arithmetic, with every party in a thread of
+ * this process, as the in-process command does.
+ */
+class DummyParties {
+
+    /**
+     * Runs the same application for every party.
+     *
+     * @return the output of the first party
+     */
+    static <T> T run(Application<T, ProtocolBuilderNumeric> application, int numberOfParties) {
+        return run(numberOfParties, null, runner -> application).get(0);
+    }
+
+    /**
+     * @param checkpointDirectory where the parties save checkpoints, or null
+     * @param applications        creates the application of a party, given its runner
+     * @return the outputs of the parties, in order of their ids
+     */
+    static <T> List<T> run(int numberOfParties, Path checkpointDirectory,
+                           Function<DummyRunner<T>, Application<T, ProtocolBuilderNumeric>> applications) {
+        Map<Integer, Party> partyMap = new HashMap<>();
+        for (int id = 1; id <= numberOfParties; id++) {
+            partyMap.put(id, new Party(id, "localhost", 0));
+        }
+        return InProcessRunner.run(numberOfParties, (myId, network) -> {
+            DummyRunner<T> runner = new DummyRunner<>(myId, partyMap, network,
+                512, 200, Strategy.BATCHED, 4096, checkpointDirectory, false);
+            try {
+                return runner.run(applications.apply(runner));
+            } finally {
+                runner.close();
+            }
+        });
+    }
+}
@@ -1,39 +1,64 @@
 package com.philips.research.regression.app;
 
+import com.philips.research.regression.logging.Phases;
+import com.philips.research.regression.primitives.Cholesky;
+import com.philips.research.regression.primitives.LocalGradient;
+import com.philips.research.regression.primitives.LocalHessian;
+import com.philips.research.regression.util.DataSet;
 import dk.alexandra.fresco.framework.Application;
 import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
 import dk.alexandra.fresco.lib.collections.Matrix;
 import dk.alexandra.fresco.lib.real.SReal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
-import static com.philips.research.regression.Runner.run;
 import static com.philips.research.regression.app.CarDataSet.*;
+import static com.philips.research.regression.app.DummyParties.run;
 import static com.philips.research.regression.util.ListAssert.assertEquals;
 import static com.philips.research.regression.util.ListConversions.unwrap;
-import static com.philips.research.regression.util.MatrixConstruction.matrix;
-import static com.philips.research.regression.util.MatrixConversions.transpose;
+import static com.philips.research.regression.util.MatrixConstruction.matrixWithZeros;
 import static java.math.BigDecimal.valueOf;
 import static java.util.Arrays.asList;
-import static java.util.Arrays.fill;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DisplayName("Logistic Regression")
 class FitLogisticModelTest {
 
-    private static BigDecimal intercept = valueOf(1.65707);
-    private static BigDecimal beta_hp = valueOf(0.00968555 / hp_scale);
-    private static BigDecimal beta_wt = valueOf(-1.17481 / wt_scale);
+    private final List<String> phases = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void listenToPhases() {
+        Phases.setListener(phases::add);
+    }
+
+    @AfterEach
+    void stopListening() {
+        Phases.setListener(null);
+    }
 
     @Test
     @DisplayName("performs logistic regression")
     void fitsLogisticModel() {
-        List<BigDecimal> beta = run(new FitLogisticModelApplication(Xs, Ys, 1.0, 5, null), 2);
+        List<BigDecimal> beta = run(new FitLogisticModelApplication(data, 1.0, 5, null), 2);
+        assertEquals(asList(beta_hp, beta_wt, intercept), beta, 0.01);
+    }
+
+    @Test
+    @DisplayName("performs logistic regression with forward and back substitution")
+    void fitsLogisticModelWithSubstitution() {
+        List<BigDecimal> beta = run(new FitLogisticModelApplication(data, 1.0, 5, 0, null, Solver.SUBSTITUTION), 2);
         assertEquals(asList(beta_hp, beta_wt, intercept), beta, 0.01);
     }
 
@@ -41,56 +66,148 @@ class FitLogisticModelTest {
     @DisplayName("performs logistic regression with differential privacy")
     void fitsLogisticModelWithDifferentialPrivacy() {
         BigDecimal privacyBudget = valueOf(1000);
-        List<BigDecimal> beta = run(new FitLogisticModelApplication(Xs, Ys, 1.0, 5, privacyBudget), 2);
+        List<BigDecimal> beta = run(new FitLogisticModelApplication(data, 1.0, 5, privacyBudget), 2);
         assertEquals(asList(beta_hp, beta_wt, intercept), beta, 0.1);
     }
 
-    private static BigDecimal[] ones;
-    static {
-        ones = new BigDecimal[hp1.length];
-        fill(ones, BigDecimal.ONE);
+    @Test
+    @DisplayName("stops iterating once the model has converged")
+    void stopsWhenConverged() {
+        List<BigDecimal> beta = run(new FitLogisticModelApplication(data, 1.0, 100, 0.0001, null), 2);
+        assertEquals(asList(beta_hp, beta_wt, intercept), beta, 0.01);
+        int iterations = iterationsRun();
+        assertTrue(iterations > 1 && iterations < 100, "ran " + iterations + " iterations");
+    }
+
+    @Test
+    @DisplayName("spends the remaining privacy budget once the model has converged")
+    void stopsWhenConvergedWithDifferentialPrivacy() {
+        BigDecimal privacyBudget = valueOf(1000);
+        List<BigDecimal> beta = run(new FitLogisticModelApplication(data, 1.0, 10, 0.01, privacyBudget), 2);
+        assertEquals(asList(beta_hp, beta_wt, intercept), beta, 0.1);
+
+        int iterations = iterationsRun();
+        assertTrue(iterations < 10, "ran " + iterations + " iterations");
+        long noisePhases = phases.stream().filter(phase -> phase.equals("noise")).count();
+        assertEquals(2 * iterations, noisePhases);
     }
 
-    private static Matrix<BigDecimal> X1 = transpose(matrix(hp1, wt1, ones));
-    private static Matrix<BigDecimal> X2 = transpose(matrix(hp2, wt2, ones));
+    @Test
+    @DisplayName("leaves the remaining privacy budget to the final iteration")
+    void splitsPrivacyBudget() {
+        BigDecimal privacyBudget = valueOf(1000);
+        for (int iteration = 0; iteration < 10; iteration++) {
+            BigDecimal epsilon = FitLogisticModel.epsilon(privacyBudget, 10, iteration, false);
+            assertEquals(0, valueOf(100).compareTo(epsilon), "epsilon " + epsilon);
+        }
+        BigDecimal last = FitLogisticModel.epsilon(privacyBudget, 10, 6, true);
+        assertEquals(0, valueOf(400).compareTo(last), "final epsilon " + last);
+        assertNull(FitLogisticModel.epsilon(null, 10, 6, true));
+    }
 
-    private static List<Matrix<BigDecimal>> Xs = asList(X1, X2);
-    private static List<Vector<BigDecimal>> Ys = asList(am1, am2);
+    /**
+     * @return the number of iterations that the parties evaluated
+     */
+    private int iterationsRun() {
+        return phases.stream()
+            .filter(phase -> phase.startsWith("iteration "))
+            .mapToInt(phase -> Integer.parseInt(phase.substring("iteration ".length())) + 1)
+            .max()
+            .orElse(0);
+    }
+
+    @Test
+    @DisplayName("performs logistic regression with more than two parties")
+    void fitsLogisticModelWithThreeParties() {
+        List<DataSet> threeParties = asList(
+            dataSet(hp1, wt1, am1),
+            dataSet(hp2, wt2, am2, 0, 5),
+            dataSet(hp2, wt2, am2, 5, hp2.length));
+        List<BigDecimal> beta = run(new FitLogisticModelApplication(threeParties, 1.0, 5, null), 3);
+        assertEquals(asList(beta_hp, beta_wt, intercept), beta, 0.01);
+    }
+
+    @Test
+    @DisplayName("fits models for several lambdas side by side")
+    void fitsRegularizationPath() {
+        List<List<BigDecimal>> betas = fitRegularizationPath(asList(1.0, 10.0), 5);
+        assertEquals(asList(beta_hp, beta_wt, intercept), betas.get(0), 0.01);
+        List<BigDecimal> separate = run(new FitLogisticModelApplication(data, 10.0, 5, null), 2);
+        assertEquals(separate, betas.get(1), 0.001);
+    }
+
+    /**
+     * Fits the models with the code path of the application.
+     */
+    private static List<List<BigDecimal>> fitRegularizationPath(List<Double> lambdas, int iterations) {
+        return DummyParties.run(data.size(), null, runner -> {
+            DataSet mine = data.get(runner.getMyId() - 1);
+            return new LogisticRegression(runner.getMyId(), mine, LocalGradient.of(mine),
+                new LocalHessian(mine, ForkJoinPool.commonPool()), lambdas, iterations, 0, 0,
+                Cholesky.DEFAULT_BLOCK_SIZE, Solver.AUTO, null, false);
+        }).get(0);
+    }
+
+    private static List<DataSet> data = asList(dataSet(hp1, wt1, am1), dataSet(hp2, wt2, am2));
 }
 
 class FitLogisticModelApplication implements Application<List<BigDecimal>, ProtocolBuilderNumeric> {
 
-    private List<Matrix<BigDecimal>> Xs;
-    private List<Vector<BigDecimal>> Ys;
+    private List<DataSet> data;
     private double lambda;
     private int numberOfIterations;
+    private double tolerance;
     private BigDecimal privacyBudget;
+    private Solver solver;
 
-    FitLogisticModelApplication(List<Matrix<BigDecimal>> Xs, List<Vector<BigDecimal>> Ys, double lambda, int numberOfIterations, BigDecimal privacyBudget) {
-        this.Xs = Xs;
-        this.Ys = Ys;
+    FitLogisticModelApplication(List<DataSet> data, double lambda, int numberOfIterations, BigDecimal privacyBudget) {
+        this(data, lambda, numberOfIterations, 0, privacyBudget);
+    }
+
+    FitLogisticModelApplication(List<DataSet> data, double lambda, int numberOfIterations, double tolerance,
+                                BigDecimal privacyBudget) {
+        this(data, lambda, numberOfIterations, tolerance, privacyBudget, Solver.AUTO);
+    }
+
+    FitLogisticModelApplication(List<DataSet> data, double lambda, int numberOfIterations, double tolerance,
+                                BigDecimal privacyBudget, Solver solver) {
+        this.solver = solver;
+        this.data = data;
         this.lambda = lambda;
         this.numberOfIterations = numberOfIterations;
+        this.tolerance = tolerance;
         this.privacyBudget = privacyBudget;
     }
 
     @Override
     public DRes<List<BigDecimal>> buildComputation(ProtocolBuilderNumeric builder) {
         return builder.seq(seq -> {
-            List<DRes<Matrix<DRes<SReal>>>> closedXs = new ArrayList<>();
-            for (int party = 1; party <= Xs.size(); party++) {
-                Matrix<BigDecimal> X = Xs.get(party - 1);
-                DRes<Matrix<DRes<SReal>>> closedX = seq.realLinAlg().input(X, party);
-                closedXs.add(closedX);
-            }
-
-            Matrix<BigDecimal> myX = Xs.get(seq.getBasicNumericContext().getMyId() - 1);
-            Vector<BigDecimal> myY = Ys.get(seq.getBasicNumericContext().getMyId() - 1);
+            DataSet myData = data.get(seq.getBasicNumericContext().getMyId() - 1);
+            List<DRes<Matrix<DRes<SReal>>>> hessians = inputHessians(seq, data);
+            int numberOfInputs = numberOfInputs(data);
 
-            DRes<Vector<DRes<SReal>>> result = seq.seq(new FitLogisticModel(closedXs, lambda, numberOfIterations, myX, myY, privacyBudget));
+            DRes<Vector<DRes<SReal>>> result = seq.seq(new FitLogisticModel(hessians, numberOfInputs, lambda, numberOfIterations, tolerance, Cholesky.DEFAULT_BLOCK_SIZE, solver, LocalGradient.of(myData), privacyBudget));
             DRes<Vector<DRes<BigDecimal>>> opened = seq.realLinAlg().openVector(result);
 
             return () -> unwrap(opened);
         });
     }
+
+    static List<DRes<Matrix<DRes<SReal>>>> inputHessians(ProtocolBuilderNumeric builder, List<DataSet> data) {
+        int myId = builder.getBasicNumericContext().getMyId();
+        DataSet myData = data.get(myId - 1);
+        int width = myData.getWidth();
+        List<DRes<Matrix<DRes<SReal>>>> hessians = new ArrayList<>();
+        for (int party = 1; party <= data.size(); party++) {
+            Matrix<BigDecimal> H = party == myId
+                ? new LocalHessian(myData, ForkJoinPool.commonPool()).compute()
+                : matrixWithZeros(width, width);
+            hessians.add(builder.realLinAlg().input(H, party));
+        }
+        return hessians;
+    }
+
+    static int numberOfInputs(List<DataSet> data) {
+        return data.stream().mapToInt(DataSet::getHeight).sum();
+    }
 }
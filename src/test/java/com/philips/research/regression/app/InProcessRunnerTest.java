@@ -0,0 +1,51 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.primitives.Cholesky;
+import com.philips.research.regression.primitives.LocalGradient;
+import com.philips.research.regression.primitives.LocalHessian;
+import com.philips.research.regression.util.DataSet;
+import com.philips.research.regression.util.ListAssert;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.philips.research.regression.app.CarDataSet.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("In-process runner")
+class InProcessRunnerTest {
+
+    @Test
+    @DisplayName("fits a model with parties in threads of one process")
+    void fitsInProcess() {
+        List<DataSet> data = asList(dataSet(hp1, wt1, am1), dataSet(hp2, wt2, am2));
+
+        List<List<List<BigDecimal>>> results = DummyParties.run(data.size(), null, runner -> {
+            DataSet mine = data.get(runner.getMyId() - 1);
+            return new LogisticRegression(runner.getMyId(), mine, LocalGradient.of(mine),
+                new LocalHessian(mine, ForkJoinPool.commonPool()), singletonList(1.0), 5, 0, 0,
+                Cholesky.DEFAULT_BLOCK_SIZE, Solver.AUTO, null, false);
+        });
+
+        assertEquals(2, results.size());
+        assertEquals(results.get(0), results.get(1));
+        ListAssert.assertEquals(asList(beta_hp, beta_wt, intercept), results.get(0).get(0), 0.01);
+    }
+
+    @Test
+    @DisplayName("reports the failure of a party")
+    void reportsFailure() {
+        assertThrows(IllegalStateException.class, () -> InProcessRunner.run(2, (myId, network) -> {
+            if (myId == 2) {
+                throw new IllegalArgumentException("failure");
+            }
+            return network.receive(2);
+        }));
+    }
+}
@@ -0,0 +1,85 @@
+package com.philips.research.regression.app;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.philips.research.regression.logging.PhaseTracer;
+import com.philips.research.regression.logging.Phases;
+import com.philips.research.regression.network.LoopbackNetwork;
+import com.philips.research.regression.primitives.Cholesky;
+import com.philips.research.regression.primitives.LocalGradient;
+import com.philips.research.regression.primitives.LocalHessian;
+import com.philips.research.regression.util.DataSet;
+import dk.alexandra.fresco.framework.Party;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static com.philips.research.regression.app.CarDataSet.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Phase tracer")
+class PhaseTracerTest {
+
+    @Test
+    @DisplayName("attributes costs to the phases of a fit")
+    void attributesCosts() throws IOException {
+        PhaseTracer tracer = trace(Strategy.BATCHED);
+
+        List<PhaseTracer.Costs> phases = tracer.getPhases();
+        assertEquals(asList("start", "input", "hessian", "cholesky", "iteration 0", "iteration 1", "output"),
+            phases.stream().map(PhaseTracer.Costs::getPhase).collect(Collectors.toList()));
+        for (PhaseTracer.Costs phase : phases.subList(3, phases.size())) {
+            assertTrue(phase.getRounds() > 0);
+            assertTrue(phase.getNativeProtocols() > 0);
+            assertTrue(phase.getWallTimeNanos() >= 0);
+        }
+
+        StringWriter json = new StringWriter();
+        tracer.write(json);
+        JsonObject report = new JsonParser().parse(json.toString()).getAsJsonObject();
+        assertEquals(phases.size(), report.getAsJsonArray("phases").size());
+        assertEquals(phases.stream().mapToLong(PhaseTracer.Costs::getRounds).sum(),
+            report.getAsJsonObject("total").get("rounds").getAsLong());
+    }
+
+    @Test
+    @DisplayName("counts the rounds of the chosen strategy")
+    void countsRoundsOfStrategy() throws IOException {
+        long batched = trace(Strategy.BATCHED).getPhases().get(3).getRounds();
+        long sequential = trace(Strategy.SEQUENTIAL).getPhases().get(3).getRounds();
+        assertTrue(sequential > batched, sequential + " rounds evaluating sequentially, " + batched + " batched");
+    }
+
+    private static PhaseTracer trace(Strategy strategy) throws IOException {
+        DummyRunner<List<List<BigDecimal>>> runner = new DummyRunner<>(1, singletonMap(1, new Party(1, "localhost", 0)),
+            new LoopbackNetwork(), 512, 200, strategy, 4096, null, true);
+        PhaseTracer tracer = runner.getTracer();
+        tracer.start();
+        Phases.setListener(tracer);
+        try {
+            runner.run(application());
+        } finally {
+            Phases.setListener(null);
+            tracer.finish();
+            runner.close();
+        }
+        return tracer;
+    }
+
+    private static LogisticRegression application() {
+        DataSet data = dataSet(hp1, wt1, am1);
+        return new LogisticRegression(1, data, LocalGradient.of(data),
+            new LocalHessian(data, ForkJoinPool.commonPool()), singletonList(1.0), 2, 0, 0,
+            Cholesky.DEFAULT_BLOCK_SIZE, Solver.AUTO, null, false);
+    }
+}
@@ -0,0 +1,149 @@
+package com.philips.research.regression.app;
+
+import com.philips.research.regression.checkpoint.CheckpointStore;
+import com.philips.research.regression.logging.PhaseTracer;
+import com.philips.research.regression.preprocessing.FileBackedDataSupplier;
+import com.philips.research.regression.preprocessing.Preprocessor;
+import com.philips.research.regression.primitives.Cholesky;
+import com.philips.research.regression.primitives.LocalGradient;
+import com.philips.research.regression.primitives.LocalHessian;
+import com.philips.research.regression.util.DataSet;
+import com.philips.research.regression.util.ListAssert;
+import dk.alexandra.fresco.framework.Party;
+import dk.alexandra.fresco.framework.builder.numeric.field.BigIntegerFieldDefinition;
+import dk.alexandra.fresco.framework.util.ModulusFinder;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDummyDataSupplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static com.philips.research.regression.app.CarDataSet.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Resuming a fit")
+class ResumeTest {
+
+    private final List<DataSet> data = asList(dataSet(hp1, wt1, am1), dataSet(hp2, wt2, am2));
+
+    @Test
+    @DisplayName("agrees on a checkpoint when one party missed the final one")
+    void resumesFromMixedCheckpoints() throws IOException {
+        Path directory = Files.createTempDirectory("checkpoints");
+        List<List<List<BigDecimal>>> fitted = fit(directory, false);
+        Path party2 = directory.resolve("party-2");
+        int latest = latest(party2);
+        assertTrue(Files.exists(party2.resolve("iteration-" + (latest - 1) + ".checkpoint")));
+
+        // As if party 2 crashed while writing the checkpoint of the converged model
+        Files.delete(party2.resolve("iteration-" + latest + ".checkpoint"));
+        List<List<List<BigDecimal>>> resumed = fit(directory, true);
+
+        assertEquals(fitted, resumed);
+    }
+
+    @Test
+    @DisplayName("continues after the preprocessed material that a crashed party may have used")
+    void resumesWithPreprocessedMaterial() throws IOException {
+        Path checkpoints = Files.createTempDirectory("checkpoints");
+        Path material = Files.createTempDirectory("preprocessed");
+        preprocess(material, 3);
+
+        // Party 2 dies after the first iteration, before it releases its material
+        assertThrows(IllegalStateException.class, () -> fitWithMaterial(checkpoints, material, 1, false, 2));
+        assertTrue(Files.exists(material.resolve("party-2").resolve("in-use")));
+        List<List<List<BigDecimal>>> resumed = fitWithMaterial(checkpoints, material, 3, true, 0);
+
+        List<BigDecimal> expected = DummyParties.<List<List<BigDecimal>>>run(data.size(), null,
+            runner -> application(runner.getMyId(), 3, 0, null, false)).get(0).get(0);
+        for (List<List<BigDecimal>> models : resumed) {
+            ListAssert.assertEquals(expected, models.get(0), 0.01);
+        }
+        assertFalse(Files.exists(material.resolve("party-2").resolve("in-use")));
+    }
+
+    private List<List<List<BigDecimal>>> fit(Path directory, boolean resume) {
+        return DummyParties.run(data.size(), directory,
+            runner -> application(runner.getMyId(), 100, 0.0001, runner.getCheckpoints(), resume));
+    }
+
+    /**
+     * Fits with SPDZ on preprocessed material. The crashing party stops
+     * without closing its runner, as if its process was killed.
+     *
+     * @param crashingParty the id of the party that crashes, or 0 when none does
+     */
+    private List<List<List<BigDecimal>>> fitWithMaterial(Path checkpoints, Path material, int iterations,
+                                                         boolean resume, int crashingParty) {
+        Map<Integer, Party> partyMap = new HashMap<>();
+        for (int id = 1; id <= data.size(); id++) {
+            partyMap.put(id, new Party(id, "localhost", 0));
+        }
+        return InProcessRunner.run(data.size(), (myId, network) -> {
+            SpdzRunner<List<List<BigDecimal>>> runner = new SpdzRunner<>(myId, partyMap, network, false, 512, 200,
+                Strategy.BATCHED, 4096, 1024, PreprocessedValuesSupplier.DEFAULT_BATCH_SIZE, null, checkpoints,
+                resume, material, false);
+            List<List<BigDecimal>> result = runner.run(
+                application(myId, iterations, 0, runner.getCheckpoints(), resume));
+            if (myId == crashingParty) {
+                throw new IllegalStateException("Party " + myId + " crashed");
+            }
+            runner.close();
+            return result;
+        });
+    }
+
+    /**
+     * Generates dummy material for two fits of the given number of
+     * iterations, and for the material that a crashed party may have
+     * reserved without using it.
+     */
+    private void preprocess(Path material, int iterations) throws IOException {
+        DryRun dryRun = new DryRun(512, 200, 4096);
+        dryRun.run(application(1, iterations, 0, null, false));
+        dryRun.shutdown();
+        PhaseTracer.Costs total = dryRun.getTotal();
+        BigInteger modulus = ModulusFinder.findSuitableModulus(512);
+        BigInteger key = new BigInteger(modulus.bitLength(), new java.util.Random(0)).mod(modulus);
+        Preprocessor preprocessor = new Preprocessor(material, amount(total.getTriples()), amount(total.getInputMasks()),
+            amount(total.getBits()), amount(total.getRandomElements()), amount(total.getExpPipes()));
+        for (int id = 1; id <= data.size(); id++) {
+            preprocessor.generate(new SpdzDummyDataSupplier(id, data.size(),
+                new BigIntegerFieldDefinition(modulus), key), id, data.size());
+        }
+    }
+
+    private static int amount(long needed) {
+        return (int) (2 * needed + 2 * FileBackedDataSupplier.RESERVATION);
+    }
+
+    private LogisticRegression application(int myId, int iterations, double tolerance, CheckpointStore checkpoints,
+                                           boolean resume) {
+        DataSet mine = data.get(myId - 1);
+        return new LogisticRegression(myId, mine, LocalGradient.of(mine),
+            new LocalHessian(mine, ForkJoinPool.commonPool()), singletonList(1.0), iterations, tolerance, 0,
+            Cholesky.DEFAULT_BLOCK_SIZE, Solver.AUTO, checkpoints, resume);
+    }
+
+    private static int latest(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(".checkpoint"))
+                .mapToInt(name -> Integer.parseInt(name.replaceAll("\\D", "")))
+                .max()
+                .orElse(-1);
+        }
+    }
+}
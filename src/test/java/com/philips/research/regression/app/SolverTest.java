@@ -0,0 +1,22 @@
+package com.philips.research.regression.app;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Solver")
+class SolverTest {
+
+    @Test
+    @DisplayName("inverts automatically once the iterations save more rounds than inverting takes")
+    void invertsWhenSavingRounds() {
+        assertFalse(Solver.AUTO.usesInverse(1, 100));
+        assertFalse(Solver.AUTO.usesInverse(3, 1));
+        assertTrue(Solver.AUTO.usesInverse(3, 2));
+        assertTrue(Solver.AUTO.usesInverse(30, 1));
+        assertFalse(Solver.SUBSTITUTION.usesInverse(30, 100));
+        assertTrue(Solver.INVERSE.usesInverse(1, 1));
+    }
+}
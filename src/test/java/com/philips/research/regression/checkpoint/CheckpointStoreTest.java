@@ -0,0 +1,135 @@
+package com.philips.research.regression.checkpoint;
+
+import com.philips.research.regression.primitives.Factorization;
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.field.BigIntegerFieldDefinition;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
+import dk.alexandra.fresco.framework.util.ModulusFinder;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
+import dk.alexandra.fresco.lib.real.fixed.SFixed;
+import dk.alexandra.fresco.suite.dummy.arithmetic.DummyArithmeticSInt;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Vector;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Checkpoint store")
+class CheckpointStoreTest {
+    private final BigIntegerFieldDefinition definition =
+        new BigIntegerFieldDefinition(ModulusFinder.findSuitableModulus(128));
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("checkpoints");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("reads back the checkpoints that it saved")
+    void roundTrip() throws IOException {
+        Matrix<DRes<SReal>> L = matrix(1, 0, 2, 3);
+        Factorization factorization = new Factorization(L, Arrays.asList(share(4), share(5)))
+            .withInverse(matrix(6, 0, 7, 8));
+        Vector<DRes<SReal>> beta = new Vector<>(Arrays.asList(share(9), share(10)));
+        Vector<BigDecimal> openedBeta = new Vector<>(Arrays.asList(new BigDecimal("0.25"), new BigDecimal("-1.5")));
+
+        CheckpointStore store = new CheckpointStore(directory, 2, new DummyShareSerializer(definition));
+        assertEquals(-1, store.latestIteration());
+        store.save(new Checkpoint(0, false, 32, new Factorization(L, null), beta, null));
+        store.save(new Checkpoint(3, true, 32, factorization, beta, openedBeta));
+        store.close();
+
+        assertEquals(3, store.latestIteration());
+        Checkpoint first = store.load(0);
+        assertNull(first.getFactorization().getDiagonalReciprocals());
+        assertNull(first.getFactorization().getLInverse());
+        assertNull(first.getOpenedBeta());
+
+        Checkpoint last = store.load(3);
+        assertEquals(3, last.getIteration());
+        assertTrue(last.isFinished());
+        assertEquals(32, last.getNumberOfInputs());
+        assertEquals(values(1, 0, 2, 3), values(last.getFactorization().getL()));
+        assertEquals(values(4, 5), values(last.getFactorization().getDiagonalReciprocals()));
+        assertEquals(values(6, 0, 7, 8), values(last.getFactorization().getLInverse()));
+        assertEquals(values(9, 10), values(last.getBeta()));
+        assertEquals(openedBeta, last.getOpenedBeta());
+    }
+
+    @Test
+    @DisplayName("keeps the MAC key share when clearing checkpoints")
+    void keepsKey() throws IOException {
+        CheckpointStore store = new CheckpointStore(directory, 1, new DummyShareSerializer(definition));
+        FieldElement key = store.loadOrCreateKey(definition, () -> definition.createElement(BigInteger.valueOf(42)));
+        store.save(new Checkpoint(0, false, 1, new Factorization(matrix(1, 0, 0, 1), null),
+            new Vector<>(Arrays.asList(share(0), share(0))), null));
+        store.close();
+        store.clear();
+
+        assertEquals(-1, store.latestIteration());
+        FieldElement reloaded = store.loadOrCreateKey(definition, () -> {
+            throw new AssertionError("Expected the saved key to be loaded");
+        });
+        assertEquals(definition.convertToUnsigned(key), definition.convertToUnsigned(reloaded));
+    }
+
+    private DRes<SReal> share(int value) {
+        return new SFixed(new DummyArithmeticSInt(definition.createElement(BigInteger.valueOf(value))));
+    }
+
+    private Matrix<DRes<SReal>> matrix(int a, int b, int c, int d) {
+        ArrayList<ArrayList<DRes<SReal>>> rows = new ArrayList<>();
+        rows.add(new ArrayList<>(Arrays.asList(share(a), share(b))));
+        rows.add(new ArrayList<>(Arrays.asList(share(c), share(d))));
+        return new Matrix<>(2, 2, rows);
+    }
+
+    private List<BigInteger> values(int... values) {
+        List<BigInteger> result = new ArrayList<>();
+        for (int value : values) {
+            result.add(BigInteger.valueOf(value));
+        }
+        return result;
+    }
+
+    private List<BigInteger> values(Matrix<DRes<SReal>> matrix) {
+        List<DRes<SReal>> elements = new ArrayList<>();
+        for (ArrayList<DRes<SReal>> row : matrix.getRows()) {
+            elements.addAll(row);
+        }
+        return values(elements);
+    }
+
+    private List<BigInteger> values(List<DRes<SReal>> shares) {
+        List<BigInteger> result = new ArrayList<>();
+        for (DRes<SReal> share : shares) {
+            DummyArithmeticSInt sint = (DummyArithmeticSInt) ((SFixed) share.out()).getSInt().out();
+            result.add(definition.convertToUnsigned(sint.getValue()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,97 @@
+package com.philips.research.regression.logging;
+
+import com.philips.research.regression.network.LoopbackNetwork;
+import com.philips.research.regression.network.WaitTimingNetwork;
+import dk.alexandra.fresco.framework.sce.evaluator.ProtocolCollectionList;
+import dk.alexandra.fresco.framework.sce.resources.ResourcePool;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Flight recorder events")
+class FlightRecorderTest {
+    private Path file;
+
+    @AfterEach
+    void deleteRecording() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("record batches with their network wait")
+    void recordsBatches() throws IOException {
+        LoopbackNetwork loopback = new LoopbackNetwork();
+        loopback.send(1, new byte[]{1});
+        WaitTimingNetwork network = new WaitTimingNetwork(loopback, FlightRecorderStrategy::isRecording);
+        FlightRecorderStrategy<ResourcePool> strategy = new FlightRecorderStrategy<>(
+            (protocols, resourcePool, batchNetwork) -> network.receive(1), network);
+
+        List<RecordedEvent> events = record(BatchEvent.class,
+            () -> strategy.processBatch(new ProtocolCollectionList<>(8), null, null));
+
+        assertEquals(1, events.size());
+        RecordedEvent batch = events.get(0);
+        assertEquals(0, batch.getInt("nativeProtocols"));
+        assertEquals("{}", batch.getString("protocolTypes"));
+        assertEquals(network.getReceiveNanos(), batch.getDuration("networkWait").toNanos());
+    }
+
+    @Test
+    @DisplayName("leave batches alone while not recording")
+    void skipsBatchesWhileNotRecording() {
+        LoopbackNetwork loopback = new LoopbackNetwork();
+        loopback.send(1, new byte[]{1});
+        WaitTimingNetwork network = new WaitTimingNetwork(loopback, FlightRecorderStrategy::isRecording);
+        FlightRecorderStrategy<ResourcePool> strategy = new FlightRecorderStrategy<>(
+            (protocols, resourcePool, batchNetwork) -> network.receive(1), network);
+
+        assertFalse(FlightRecorderStrategy.isRecording());
+        strategy.processBatch(new ProtocolCollectionList<>(8), null, null);
+
+        assertEquals(0, network.getReceiveNanos());
+    }
+
+    @Test
+    @DisplayName("record phases until the next one starts")
+    void recordsPhases() throws IOException {
+        FlightRecorderPhases phases = new FlightRecorderPhases();
+
+        List<RecordedEvent> events = record(PhaseEvent.class, () -> {
+            assertTrue(FlightRecorderPhases.isRecording());
+            phases.phaseStarted("input");
+            phases.phaseStarted("cholesky");
+            phases.finish();
+        });
+
+        assertEquals(asList("input", "cholesky"),
+            events.stream().map(event -> event.getString("phase")).collect(Collectors.toList()));
+    }
+
+    private List<RecordedEvent> record(Class<? extends jdk.jfr.Event> type, Runnable action) throws IOException {
+        file = Files.createTempFile("recording", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(type).withThreshold(java.time.Duration.ZERO);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+}
@@ -0,0 +1,88 @@
+package com.philips.research.regression.logging;
+
+import com.philips.research.regression.network.CountingNetwork;
+import com.philips.research.regression.network.LoopbackNetwork;
+import dk.alexandra.fresco.framework.sce.resources.ResourcePool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Progress metrics")
+class ProgressMetricsTest {
+    private final CountingNetwork network = new CountingNetwork(new LoopbackNetwork());
+    private final ProgressMetrics metrics = new ProgressMetrics(1, 10, network, new CountingStrategy<ResourcePool>(), null);
+
+    @Test
+    @DisplayName("follow the phases of a fit")
+    void followPhases() {
+        network.send(1, new byte[3]);
+        metrics.phaseStarted("input");
+        assertEquals(Double.NaN, metrics.secondsRemaining());
+        metrics.phaseStarted("iteration 0");
+        metrics.phaseStarted("iteration 1");
+        assertTrue(metrics.secondsRemaining() >= 0);
+
+        String text = write();
+        assertTrue(text.contains("logistic_regression_phase{phase=\"iteration 1\"} 1\n"));
+        assertTrue(text.contains("logistic_regression_iteration 1\n"));
+        assertTrue(text.contains("logistic_regression_network_bytes_total{direction=\"sent\"} 3\n"));
+        assertTrue(text.contains("# TYPE logistic_regression_rounds_total counter\n"));
+
+        metrics.finish();
+        assertEquals(0, metrics.secondsRemaining());
+    }
+
+    @Test
+    @DisplayName("estimate the remaining time from the cost of every kind of phase")
+    void estimatePerPhase() {
+        AtomicLong clock = new AtomicLong();
+        ProgressMetrics metrics = new ProgressMetrics(1, 4, network, new CountingStrategy<ResourcePool>(), null,
+            clock::get);
+        metrics.phaseStarted("cholesky");
+        clock.set(seconds(10));
+        metrics.phaseStarted("iteration 0");
+        clock.set(seconds(12));
+        metrics.phaseStarted("noise");
+        clock.set(seconds(14));
+        metrics.phaseStarted("iteration 1");
+        // Two more iterations, and the remainder of this one
+        assertEquals(12, metrics.secondsRemaining(), 1e-9);
+        clock.set(seconds(15));
+        assertEquals(11, metrics.secondsRemaining(), 1e-9);
+    }
+
+    private static long seconds(int seconds) {
+        return seconds * 1_000_000_000L;
+    }
+
+    @Test
+    @DisplayName("are served over http")
+    void areServed() throws IOException {
+        try (MetricsServer server = new MetricsServer(0, metrics)) {
+            URL url = new URL("http://localhost:" + server.getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            try (InputStream in = connection.getInputStream()) {
+                String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertEquals(write(), body);
+            }
+        }
+    }
+
+    private String write() {
+        StringWriter writer = new StringWriter();
+        metrics.write(writer);
+        return writer.toString().replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,168 @@
+package com.philips.research.regression.network;
+
+import dk.alexandra.fresco.framework.Party;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Coalescing socket network")
+class CoalescingSocketNetworkTest {
+
+    @Test
+    @DisplayName("delivers the messages of a round in order")
+    void deliversInOrder() throws Exception {
+        Map<Integer, Party> parties = parties(3);
+        CompletableFuture<Void> others = CompletableFuture.allOf(
+            CompletableFuture.runAsync(() -> echo(2, parties)),
+            CompletableFuture.runAsync(() -> echo(3, parties)));
+
+        try (CoalescingSocketNetwork network = new CoalescingSocketNetwork(1, parties)) {
+            for (int round = 0; round < 3; round++) {
+                for (byte i = 0; i < 100; i++) {
+                    network.send(2, new byte[]{i});
+                    network.send(3, new byte[]{(byte) (i + 1)});
+                }
+                network.send(2, new byte[0]);
+                network.send(3, new byte[0]);
+                for (byte i = 0; i < 100; i++) {
+                    assertEquals(i, network.receive(2)[0]);
+                    assertEquals(i + 1, network.receive(3)[0]);
+                }
+                assertEquals(0, network.receive(2).length);
+                assertEquals(0, network.receive(3).length);
+            }
+        }
+        others.get();
+    }
+
+    @Test
+    @DisplayName("exchanges messages larger than the socket buffers in both directions")
+    void exchangesLargeMessages() throws Exception {
+        Map<Integer, Party> parties = parties(2);
+        byte[] large = new byte[16 << 20];
+        Arrays.fill(large, (byte) 42);
+        CompletableFuture<byte[]> other = CompletableFuture.supplyAsync(() -> {
+            try (CoalescingSocketNetwork network = new CoalescingSocketNetwork(2, parties)) {
+                network.send(1, large);
+                return network.receive(1);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try (CoalescingSocketNetwork network = new CoalescingSocketNetwork(1, parties)) {
+            network.send(2, large);
+            assertArrayEquals(large, network.receive(2));
+        }
+        assertArrayEquals(large, other.get());
+    }
+
+    @Test
+    @DisplayName("delivers messages that a shaped network sends late")
+    void deliversShapedMessages() throws Exception {
+        Map<Integer, Party> parties = parties(2);
+        LinkShape shape = new LinkShape(TimeUnit.MILLISECONDS.toNanos(5), TimeUnit.MILLISECONDS.toNanos(2), 0);
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+            try (ShapedNetwork network = new ShapedNetwork(new CoalescingSocketNetwork(2, parties),
+                singletonMap(1, shape), 2)) {
+                for (int round = 0; round < 10; round++) {
+                    network.send(1, network.receive(1));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try (ShapedNetwork network = new ShapedNetwork(new CoalescingSocketNetwork(1, parties),
+            singletonMap(2, shape), 1)) {
+            for (byte round = 0; round < 10; round++) {
+                network.send(2, new byte[]{round});
+                assertEquals(round, network.receive(2)[0]);
+            }
+        }
+        other.get(1, TimeUnit.MINUTES);
+    }
+
+    @Test
+    @DisplayName("rejects a frame with a negative length")
+    void rejectsNegativeFrameLength() throws Exception {
+        Map<Integer, Party> parties = parties(2);
+        CompletableFuture<CoalescingSocketNetwork> connecting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return new CoalescingSocketNetwork(1, parties);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try (SocketChannel other = connect(parties.get(1))) {
+            ByteBuffer frame = ByteBuffer.allocate(2 * Integer.BYTES).putInt(2).putInt(-1);
+            frame.flip();
+            while (frame.hasRemaining()) {
+                other.write(frame);
+            }
+            try (CoalescingSocketNetwork network = connecting.get(1, TimeUnit.MINUTES)) {
+                assertThrows(UncheckedIOException.class, () -> network.receive(2));
+            }
+        }
+    }
+
+    /**
+     * Connects to a party once it listens, as a party with a higher id does.
+     */
+    private static SocketChannel connect(Party party) throws IOException, InterruptedException {
+        InetSocketAddress address = new InetSocketAddress(party.getHostname(), party.getPort());
+        while (true) {
+            try {
+                return SocketChannel.open(address);
+            } catch (ConnectException e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Sends every message of a round back, until an empty message ends the
+     * round.
+     */
+    private static void echo(int myId, Map<Integer, Party> parties) {
+        try (CoalescingSocketNetwork network = new CoalescingSocketNetwork(myId, parties)) {
+            for (int round = 0; round < 3; round++) {
+                byte[] message;
+                do {
+                    message = network.receive(1);
+                    network.send(1, message);
+                } while (message.length > 0);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<Integer, Party> parties(int count) throws IOException {
+        Map<Integer, Party> parties = new HashMap<>();
+        for (int id = 1; id <= count; id++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                parties.put(id, new Party(id, "localhost", socket.getLocalPort()));
+            }
+        }
+        return parties;
+    }
+}
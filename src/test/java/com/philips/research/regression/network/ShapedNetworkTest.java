@@ -0,0 +1,64 @@
+package com.philips.research.regression.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Shaped network")
+class ShapedNetworkTest {
+    private final List<InMemoryNetwork> networks = InMemoryNetwork.connect(2);
+    private ShapedNetwork shaped;
+
+    @AfterEach
+    void close() throws IOException {
+        shaped.close();
+        networks.get(1).close();
+    }
+
+    @Test
+    @DisplayName("delays messages by the latency and keeps their order despite jitter")
+    void delaysInOrder() {
+        long latency = TimeUnit.MILLISECONDS.toNanos(50);
+        shaped = new ShapedNetwork(networks.get(0),
+            singletonMap(2, new LinkShape(latency, TimeUnit.MILLISECONDS.toNanos(20), 0)), 0);
+
+        long start = System.nanoTime();
+        for (byte i = 0; i < 20; i++) {
+            shaped.send(2, new byte[]{i});
+        }
+        for (byte i = 0; i < 20; i++) {
+            assertEquals(i, networks.get(1).receive(1)[0]);
+        }
+        assertTrue(System.nanoTime() - start >= latency);
+    }
+
+    @Test
+    @DisplayName("limits the bandwidth")
+    void limitsBandwidth() {
+        shaped = new ShapedNetwork(networks.get(0), singletonMap(2, new LinkShape(0, 0, 8_000_000)), 0);
+
+        long start = System.nanoTime();
+        shaped.send(2, new byte[50_000]);
+        shaped.send(2, new byte[50_000]);
+        networks.get(1).receive(1);
+        networks.get(1).receive(1);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    @DisplayName("does not delay unshaped links")
+    void passesThrough() {
+        shaped = new ShapedNetwork(networks.get(0), singletonMap(2, LinkShape.UNSHAPED), 0);
+
+        shaped.send(2, new byte[]{7});
+        assertEquals(7, networks.get(1).receive(1)[0]);
+    }
+}
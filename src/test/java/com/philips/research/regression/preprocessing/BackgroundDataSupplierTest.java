@@ -0,0 +1,63 @@
+package com.philips.research.regression.preprocessing;
+
+import com.philips.research.regression.logging.CountingDataSupplier;
+import dk.alexandra.fresco.framework.builder.numeric.field.BigIntegerFieldDefinition;
+import dk.alexandra.fresco.framework.util.ModulusFinder;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDummyDataSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Background data supplier")
+class BackgroundDataSupplierTest {
+    private CountingDataSupplier producer;
+    private BackgroundDataSupplier supplier;
+
+    @BeforeEach
+    void createSupplier() {
+        BigIntegerFieldDefinition definition =
+            new BigIntegerFieldDefinition(ModulusFinder.findSuitableModulus(128));
+        producer = new CountingDataSupplier(new SpdzDummyDataSupplier(1, 1, definition, BigInteger.TEN));
+        supplier = new BackgroundDataSupplier(producer, 2, 5, 0, 1);
+    }
+
+    @AfterEach
+    void closeSupplier() {
+        supplier.close();
+    }
+
+    @Test
+    @DisplayName("fills the queue up to the high watermark")
+    void fillsQueue() {
+        // Requests are served after the refills that were submitted before them
+        supplier.getNextBit();
+        assertEquals(5, producer.getTriples());
+        assertEquals(5, supplier.getTripleQueueDepth());
+    }
+
+    @Test
+    @DisplayName("tops up the queue once the low watermark is reached")
+    void refillsAtLowWatermark() {
+        supplier.getNextTriple();
+        supplier.getNextTriple();
+        supplier.getNextBit();
+        assertEquals(5, producer.getTriples());
+
+        supplier.getNextTriple();
+        supplier.getNextBit();
+        assertEquals(8, producer.getTriples());
+        assertEquals(5, supplier.getTripleQueueDepth());
+    }
+
+    @Test
+    @DisplayName("rejects watermarks in the wrong order")
+    void rejectsWatermarks() {
+        assertThrows(IllegalArgumentException.class, () -> new BackgroundDataSupplier(producer, 5, 5, 0, 1));
+    }
+}
@@ -0,0 +1,113 @@
+package com.philips.research.regression.preprocessing;
+
+import dk.alexandra.fresco.framework.builder.numeric.field.BigIntegerFieldDefinition;
+import dk.alexandra.fresco.framework.builder.numeric.field.FieldElement;
+import dk.alexandra.fresco.framework.util.ModulusFinder;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzInputMask;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzSInt;
+import dk.alexandra.fresco.suite.spdz.datatypes.SpdzTriple;
+import dk.alexandra.fresco.suite.spdz.storage.SpdzDummyDataSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("File backed data supplier")
+class FileBackedDataSupplierTest {
+    private final BigIntegerFieldDefinition definition =
+        new BigIntegerFieldDefinition(ModulusFinder.findSuitableModulus(128));
+    private final BigInteger macKey = BigInteger.valueOf(1234567);
+    private final FieldElement key = definition.createElement(macKey);
+    private Path directory;
+
+    @BeforeEach
+    void generate() throws IOException {
+        directory = Files.createTempDirectory("preprocessed");
+        SpdzDummyDataSupplier source = new SpdzDummyDataSupplier(1, 1, definition, macKey);
+        new Preprocessor(directory, 3, 2, 2, 2, 0).generate(source, 1, 1);
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("supplies the stored material")
+    void suppliesMaterial() throws IOException {
+        try (FileBackedDataSupplier supplier = FileBackedDataSupplier.open(directory, 1, 1, definition)) {
+            assertEquals(value(key), value(supplier.getSecretSharedKey()));
+            SpdzTriple triple = supplier.getNextTriple();
+            assertMac(triple.getA());
+            assertMac(triple.getB());
+            assertMac(triple.getC());
+            assertEquals(value(triple.getA().getShare().multiply(triple.getB().getShare())), value(triple.getC().getShare()));
+
+            SpdzInputMask mask = supplier.getNextInputMask(1);
+            assertMac(mask.getMask());
+            assertEquals(value(mask.getRealValue()), value(mask.getMask().getShare()));
+
+            SpdzSInt bit = supplier.getNextBit();
+            assertMac(bit);
+            assertTrue(value(bit.getShare()).compareTo(BigInteger.ONE) <= 0);
+
+            assertMac(supplier.getNextRandomFieldElement());
+        }
+    }
+
+    @Test
+    @DisplayName("never supplies the same material twice")
+    void continuesWhereItStopped() throws IOException {
+        BigInteger first;
+        try (FileBackedDataSupplier supplier = FileBackedDataSupplier.open(directory, 1, 1, definition)) {
+            first = value(supplier.getNextTriple().getA().getShare());
+            supplier.getNextTriple();
+        }
+        try (FileBackedDataSupplier supplier = FileBackedDataSupplier.open(directory, 1, 1, definition)) {
+            assertNotEquals(first, value(supplier.getNextTriple().getA().getShare()));
+            assertThrows(IllegalStateException.class, supplier::getNextTriple);
+        }
+    }
+
+    @Test
+    @DisplayName("refuses material that is in use")
+    void refusesMaterialInUse() throws IOException {
+        try (FileBackedDataSupplier ignored = FileBackedDataSupplier.open(directory, 1, 1, definition)) {
+            assertThrows(IllegalStateException.class,
+                () -> FileBackedDataSupplier.open(directory, 1, 1, definition));
+        }
+    }
+
+    @Test
+    @DisplayName("skips the material that a crashed run may have used")
+    void skipsMaterialOfCrashedRun() throws IOException {
+        FileBackedDataSupplier crashed = FileBackedDataSupplier.open(directory, 1, 1, definition);
+        crashed.getNextTriple();
+
+        try (FileBackedDataSupplier supplier = FileBackedDataSupplier.open(directory, 1, 1, definition, true)) {
+            assertThrows(IllegalStateException.class, supplier::getNextTriple);
+            assertMac(supplier.getNextBit());
+        }
+    }
+
+    private void assertMac(SpdzSInt value) {
+        assertEquals(value(key.multiply(value.getShare())), value(value.getMac()));
+    }
+
+    private BigInteger value(FieldElement element) {
+        return definition.convertToUnsigned(element);
+    }
+}
@@ -1,16 +1,21 @@
 package com.philips.research.regression.primitives;
 
+import dk.alexandra.fresco.framework.DRes;
 import dk.alexandra.fresco.lib.collections.Matrix;
+import dk.alexandra.fresco.lib.real.SReal;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.philips.research.regression.Runner.run;
 import static com.philips.research.regression.util.BigDecimalUtils.arrayOf;
 import static com.philips.research.regression.util.MatrixAssert.assertEquals;
 import static com.philips.research.regression.util.MatrixConstruction.matrix;
 import static java.lang.Math.sqrt;
+import static java.util.Collections.singletonList;
 
 @DisplayName("Cholesky decomposition")
 class CholeskyTest {
@@ -28,5 +33,44 @@ class CholeskyTest {
 
         assertEquals(expected, run(new MatrixTransformation(input, Cholesky::new)), 3);
     }
-}
 
+    @Test
+    @DisplayName("gives the same decomposition for every block size")
+    void calculatesBlockedCholesky() {
+        Matrix<BigDecimal> input = matrix(
+            arrayOf(4.0, 2.0, 1.0, 2.0),
+            arrayOf(2.0, 10.0, 3.5, 2.5),
+            arrayOf(1.0, 3.5, 5.25, 3.0),
+            arrayOf(2.0, 2.5, 3.0, 4.5));
+
+        Matrix<BigDecimal> expected = matrix(
+            arrayOf(2.0, 0.0, 0.0, 0.0),
+            arrayOf(1.0, 3.0, 0.0, 0.0),
+            arrayOf(0.5, 1.0, 2.0, 0.0),
+            arrayOf(1.0, 0.5, 1.0, 1.5));
+
+        for (int blockSize = 1; blockSize <= 4; blockSize++) {
+            int size = blockSize;
+            assertEquals(expected, run(new MatrixTransformation(input, closed -> new Cholesky(closed, size))), 2);
+        }
+    }
+
+    @Test
+    @DisplayName("provides the reciprocals of the diagonal of the factor")
+    void providesDiagonalReciprocals() {
+        Matrix<BigDecimal> input = matrix(
+            arrayOf(4.0, 2.0),
+            arrayOf(2.0, 10.0));
+
+        Matrix<BigDecimal> expected = matrix(
+            arrayOf(0.5),
+            arrayOf(1.0 / 3.0));
+
+        assertEquals(expected, run(new MatrixTransformation(input, closed -> builder ->
+            builder.seq(new Cholesky(closed).factorization()).seq((seq, factorization) -> {
+                List<DRes<SReal>> reciprocals = factorization.getDiagonalReciprocals();
+                return () -> new Matrix<>(reciprocals.size(), 1,
+                    row -> new ArrayList<>(singletonList(reciprocals.get(row))));
+            }))), 3);
+    }
+}
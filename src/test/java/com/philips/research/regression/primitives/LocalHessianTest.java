@@ -0,0 +1,44 @@
+package com.philips.research.regression.primitives;
+
+import com.philips.research.regression.util.DataSet;
+import dk.alexandra.fresco.lib.collections.Matrix;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.philips.research.regression.util.BigDecimalUtils.arrayOf;
+import static com.philips.research.regression.util.MatrixAssert.assertEquals;
+import static com.philips.research.regression.util.MatrixConstruction.matrix;
+
+@DisplayName("Local Hessian matrix")
+class LocalHessianTest {
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("calculates an approximation of the Hessian matrix including the intercept")
+    void calculatesHessian() {
+        DataSet.Builder builder = new DataSet.Builder();
+        builder.addPredictors(new double[]{1.0, 2.0});
+        builder.addPredictors(new double[]{3.0, 4.0});
+        builder.addPredictors(new double[]{5.0, 6.0});
+        builder.addOutcome(0.0);
+        builder.addOutcome(1.0);
+        builder.addOutcome(0.0);
+
+        Matrix<BigDecimal> expected = matrix(
+            arrayOf(-8.75, -11.0, -2.25),
+            arrayOf(-11.0, -14.0, -3.0),
+            arrayOf(-2.25, -3.0, -0.75));
+
+        Matrix<BigDecimal> result = new LocalHessian(builder.build(), pool).compute();
+        assertEquals(expected, result, 5);
+    }
+}
@@ -1,11 +1,15 @@
 package com.philips.research.regression.primitives;
 
+import com.philips.research.regression.util.DataSet;
 import com.philips.research.regression.util.ListAssert;
 import dk.alexandra.fresco.lib.collections.Matrix;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.philips.research.regression.util.BigDecimalUtils.arrayOf;
 import static com.philips.research.regression.util.VectorUtils.vectorOf;
@@ -13,6 +17,15 @@ import static com.philips.research.regression.util.MatrixConstruction.matrix;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class LocalLogLikelihoodPrimeTest {
+    private final ForkJoinPool singleThread = new ForkJoinPool(1);
+    private final ForkJoinPool fourThreads = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPools() {
+        singleThread.shutdown();
+        fourThreads.shutdown();
+    }
+
     @Test void compute() {
         Matrix<BigDecimal> x = matrix(
             arrayOf(1.0, 2.0, 3.0, 4.0),
@@ -26,6 +39,36 @@ class LocalLogLikelihoodPrimeTest {
         ListAssert.assertEquals(expected, result, 0.0001);
     }
 
+    @Test void doubleKernelMatchesReference() {
+        DataSet data = randomData(2 * DoubleLocalGradient.BLOCK_SIZE + 17);
+        Vector<BigDecimal> beta = vectorOf(0.1, -0.2, 0.3, -0.4);
+
+        Vector<BigDecimal> expected = LocalGradient.reference(data).compute(beta);
+        Vector<BigDecimal> result = LocalGradient.of(data).compute(beta);
+
+        ListAssert.assertEquals(expected, result, 0.0000001);
+    }
+
+    @Test void doubleKernelIsIndependentOfThreadCount() {
+        DataSet data = randomData(9 * DoubleLocalGradient.BLOCK_SIZE + 5);
+        Vector<BigDecimal> beta = vectorOf(0.1, -0.2, 0.3, -0.4);
+
+        Vector<BigDecimal> single = LocalGradient.of(data, singleThread).compute(beta);
+        Vector<BigDecimal> multiple = LocalGradient.of(data, fourThreads).compute(beta);
+
+        assertEquals(single, multiple);
+    }
+
+    private static DataSet randomData(int rows) {
+        Random random = new Random(1);
+        DataSet.Builder builder = new DataSet.Builder();
+        for (int i = 0; i < rows; ++i) {
+            builder.addPredictors(new double[]{random.nextDouble(), random.nextDouble(), random.nextDouble()});
+            builder.addOutcome(random.nextBoolean() ? 1.0 : 0.0);
+        }
+        return builder.build();
+    }
+
     @Test void Likelihood() {
         Vector<BigDecimal> xi = vectorOf(1.0, 2.0);
         Vector<BigDecimal> beta = vectorOf(0.1, 0.2);
@@ -0,0 +1,58 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.framework.Application;
+import dk.alexandra.fresco.framework.DRes;
+import dk.alexandra.fresco.framework.builder.numeric.ProtocolBuilderNumeric;
+import dk.alexandra.fresco.framework.util.Pair;
+import dk.alexandra.fresco.lib.real.SReal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static com.philips.research.regression.Runner.run;
+import static java.math.BigDecimal.valueOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Reciprocal square root")
+class ReciprocalSquareRootTest {
+
+    @Test
+    @DisplayName("calculates the reciprocal square root and the square root")
+    void calculatesBothRoots() {
+        for (double x : new double[]{0.0625, 0.25, 1.0, 2.0, 4.0, 9.0, 150.0, 1024.0}) {
+            Pair<BigDecimal, BigDecimal> result = run(new ReciprocalSquareRootApplication(x));
+            assertEquals(1.0 / Math.sqrt(x), result.getFirst().doubleValue(), 0.001);
+            assertEquals(Math.sqrt(x), result.getSecond().doubleValue(), 0.001);
+        }
+    }
+
+    @Test
+    @DisplayName("keeps its precision for large values, such as the diagonal of a Hessian")
+    void keepsPrecisionForLargeValues() {
+        for (double x : new double[]{1e4, 5e4, 1e5}) {
+            Pair<BigDecimal, BigDecimal> result = run(new ReciprocalSquareRootApplication(x));
+            double expected = 1.0 / Math.sqrt(x);
+            assertEquals(expected, result.getFirst().doubleValue(), expected * 0.01);
+            assertEquals(Math.sqrt(x), result.getSecond().doubleValue(), Math.sqrt(x) * 0.001);
+        }
+    }
+}
+
+class ReciprocalSquareRootApplication implements Application<Pair<BigDecimal, BigDecimal>, ProtocolBuilderNumeric> {
+    private final double x;
+
+    ReciprocalSquareRootApplication(double x) {
+        this.x = x;
+    }
+
+    @Override
+    public DRes<Pair<BigDecimal, BigDecimal>> buildComputation(ProtocolBuilderNumeric builder) {
+        DRes<SReal> closed = builder.realNumeric().input(valueOf(x), 1);
+        return builder.seq(new ReciprocalSquareRoot(closed)).seq((seq, roots) -> {
+            DRes<BigDecimal> reciprocalSquareRoot = seq.realNumeric().open(roots.getFirst());
+            DRes<BigDecimal> squareRoot = seq.realNumeric().open(roots.getSecond());
+            return () -> new Pair<>(reciprocalSquareRoot.out(), squareRoot.out());
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.philips.research.regression.primitives;
+
+import dk.alexandra.fresco.lib.collections.Matrix;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static com.philips.research.regression.Runner.run;
+import static com.philips.research.regression.util.BigDecimalUtils.arrayOf;
+import static com.philips.research.regression.util.MatrixConstruction.matrix;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Triangular matrix inverse")
+class TriangularInverseTest {
+
+    @Test
+    @DisplayName("inverts a lower triangular matrix")
+    void invertsLowerTriangularMatrix() {
+        Matrix<BigDecimal> input = matrix(
+            arrayOf(2.0, 0.0, 0.0, 0.0, 0.0),
+            arrayOf(1.0, 4.0, 0.0, 0.0, 0.0),
+            arrayOf(0.5, 1.0, 2.0, 0.0, 0.0),
+            arrayOf(1.0, 0.5, 1.0, 1.0, 0.0),
+            arrayOf(0.0, 2.0, 0.5, 1.0, 4.0));
+
+        Matrix<BigDecimal> expected = matrix(
+            arrayOf(0.5, 0.0, 0.0, 0.0, 0.0),
+            arrayOf(-0.125, 0.25, 0.0, 0.0, 0.0),
+            arrayOf(-0.0625, -0.125, 0.5, 0.0, 0.0),
+            arrayOf(-0.375, 0.0, -0.5, 1.0, 0.0),
+            arrayOf(0.1640625, -0.109375, 0.0625, -0.25, 0.25));
+
+        Matrix<BigDecimal> inverse = run(new MatrixTransformation(input, TriangularInverse::new));
+        for (int row = 0; row < expected.getHeight(); row++) {
+            for (int column = 0; column < expected.getWidth(); column++) {
+                assertEquals(expected.getRow(row).get(column).doubleValue(),
+                    inverse.getRow(row).get(column).doubleValue(), 0.001);
+            }
+        }
+    }
+}
@@ -89,13 +89,14 @@ class UpdateLearnedModelApplication implements Application<Vector<BigDecimal>, P
     @Override
     public DRes<Vector<BigDecimal>> buildComputation(ProtocolBuilderNumeric builder) {
         DRes<Matrix<DRes<SReal>>> LClosed = builder.realLinAlg().input(L, 1);
+        DRes<Factorization> factorization = () -> new Factorization(LClosed.out(), null);
         DRes<Vector<DRes<SReal>>> betaClosed = builder.realLinAlg().input(beta, 1);
         DRes<Vector<DRes<SReal>>> lClosed = builder.realLinAlg().input(l, 1);
         DRes<Vector<DRes<SReal>>> result;
         if (noiseFactory != null) {
-            result = builder.seq(new UpdateLearnedModel(LClosed, betaClosed, lClosed, noiseFactory));
+            result = builder.seq(new UpdateLearnedModel(factorization, betaClosed, lClosed, noiseFactory));
         } else {
-            result = builder.seq(new UpdateLearnedModel(LClosed, betaClosed, lClosed, null, null, 0, 0));
+            result = builder.seq(new UpdateLearnedModel(factorization, betaClosed, lClosed, null, null, 0, 0));
         }
         DRes<Vector<DRes<BigDecimal>>> opened = builder.realLinAlg().openVector(result);
         return () -> new Vector<>(unwrap(opened));